@@ -187,6 +187,7 @@ import org.apache.hadoop.mapred.SequenceFileOutputFormat;
 import org.apache.hadoop.util.Progressable;
 import org.apache.hadoop.util.Shell;
 import org.apache.hive.common.util.ReflectionUtil;
+import org.apache.phoenix.hive.udf.PhoenixRegionUDF;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
@@ -3242,6 +3243,15 @@ public final class Utilities {
     long bytesPerReducer = conf.getLongVar(HiveConf.ConfVars.BYTESPERREDUCER);
     int maxReducers = conf.getIntVar(HiveConf.ConfVars.MAXREDUCERS);
 
+    // Rows distributed by phoenix_region get one reducer per region of the phoenix table.
+    for (ReduceSinkOperator sink : OperatorUtils.findOperators(work.getAllRootOperators(), ReduceSinkOperator.class)) {
+      int regionCount = PhoenixRegionUDF.getRegionCount(conf, sink.getConf().getPartitionCols());
+      if (regionCount > 0) {
+        LOG.info("Number of reducers set to region count : " + regionCount + " maxReducers=" + maxReducers);
+        return Math.min(regionCount, maxReducers);
+      }
+    }
+
     double samplePercentage = getHighestSamplePercentage(work);
     long totalInputFileSize = getTotalInputFileSize(inputSummary, work, samplePercentage);
 
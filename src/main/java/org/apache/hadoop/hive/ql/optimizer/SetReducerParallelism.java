@@ -40,6 +40,7 @@ import org.apache.hadoop.hive.ql.plan.ExprNodeDesc.ExprNodeDescEqualityWrapper;
 import org.apache.hadoop.hive.ql.plan.OperatorDesc;
 import org.apache.hadoop.hive.ql.plan.ReduceSinkDesc;
 import org.apache.hadoop.hive.ql.stats.StatsUtils;
+import org.apache.phoenix.hive.udf.PhoenixRegionUDF;
 
 /**
  * SetReducerParallelism determines how many reducers should
@@ -94,6 +95,12 @@ public class SetReducerParallelism implements NodeProcessor {
     context.visitedReduceSinks.add(sink);
 
     if (desc.getNumReducers() <= 0) {
+      // Reduce sink distributed by phoenix_region gets one reducer per region of the phoenix table.
+      int regionCount = PhoenixRegionUDF.getRegionCount(context.conf, desc.getPartitionCols());
+      if (regionCount > 0) {
+        constantReducers = Math.min(regionCount, maxReducers);
+      }
+
       if (constantReducers > 0) {
         LOG.info("Parallelism for reduce sink "+sink+" set by user to "+constantReducers);
         desc.setNumReducers(constantReducers);
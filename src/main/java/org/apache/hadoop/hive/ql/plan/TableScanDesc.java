@@ -156,6 +156,11 @@ public class TableScanDesc extends AbstractOperatorDesc {
     return filterObject;
   }
 
+  @Explain(displayName = "pushedFilterObject")
+  public String getFilterObjectExplain() {
+    return filterObject == null ? null : filterObject.toString();
+  }
+
   public void setFilterObject(Serializable filterObject) {
     this.filterObject = filterObject;
   }
@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
+import org.apache.hadoop.hive.ql.hooks.Entity;
+import org.apache.hadoop.hive.ql.hooks.ExecuteWithHookContext;
+import org.apache.hadoop.hive.ql.hooks.HookContext;
+import org.apache.hadoop.hive.ql.hooks.HookContext.HookType;
+import org.apache.hadoop.hive.ql.hooks.WriteEntity;
+import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
+import org.apache.phoenix.hive.mapreduce.PhoenixHFileWriter;
+import org.apache.phoenix.hive.util.PhoenixConnectionRegistry;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Loads hfiles written by tasks of a query in bulk load mode into HBase.
+ *
+ * Registered as post execution hook, hfiles of each phoenix table written by the query are loaded. Index tables are loaded before data table,
+ * so rows are not visible before their index rows. Registered as failure hook, hfiles of the failed query are deleted.
+ * <pre>
+ * set hive.exec.post.hooks=org.apache.phoenix.hive.PhoenixBulkLoadHook;
+ * set hive.exec.failure.hooks=org.apache.phoenix.hive.PhoenixBulkLoadHook;
+ * </pre>
+ */
+public class PhoenixBulkLoadHook implements ExecuteWithHookContext {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixBulkLoadHook.class);
+
+	@Override
+	public void run(HookContext hookContext) throws Exception {
+		Configuration config = hookContext.getConf();
+		Path queryDir = PhoenixHFileWriter.getQueryDir(config, hookContext.getQueryPlan().getQueryId());
+		FileSystem fs = queryDir.getFileSystem(config);
+
+		if (!fs.exists(queryDir)) {
+			return;
+		}
+
+		try {
+			if (hookContext.getHookType() != HookType.POST_EXEC_HOOK) {
+				if (LOG.isInfoEnabled()) {
+					LOG.info("<<<<<<<<<< query failed. hfiles are not loaded : " + queryDir + " >>>>>>>>>>");
+				}
+
+				return;
+			}
+
+			for (WriteEntity output : hookContext.getOutputs()) {
+				if (output.getType() != Entity.Type.TABLE) {
+					continue;
+				}
+
+				Map<String, String> tableParameterMap = output.getTable().getParameters();
+				if (!PhoenixStorageHandler.class.getName().equals(tableParameterMap.get(hive_metastoreConstants.META_TABLE_STORAGE))) {
+					continue;
+				}
+
+				String tableName = tableParameterMap.get(PhoenixStorageHandlerConstants.PHOENIX_TABLE_NAME);
+				if (tableName == null) {
+					tableName = output.getTable().getTableName();
+				}
+
+				Path tableDir = new Path(queryDir, tableName.toUpperCase());
+				if (fs.exists(tableDir)) {
+					loadTable(getHBaseConfiguration(config, tableParameterMap), fs, tableDir, tableName.toUpperCase());
+				}
+			}
+		} finally {
+			fs.delete(queryDir, true);
+		}
+	}
+
+	private void loadTable(Configuration hbaseConfig, FileSystem fs, Path tableDir, String dataTableName) throws Exception {
+		HConnection hconnection = PhoenixConnectionRegistry.getInstance().getHConnection(hbaseConfig);
+		LoadIncrementalHFiles loader = new LoadIncrementalHFiles(hbaseConfig);
+
+		List<Path> dataTableDirList = Lists.newArrayList();
+		List<Path> indexTableDirList = Lists.newArrayList();
+
+		for (FileStatus taskStatus : fs.listStatus(tableDir)) {
+			// files of unfinished tasks.
+			if (taskStatus.getPath().getName().equals(PhoenixHFileWriter.TEMPORARY_DIR_NAME)) {
+				continue;
+			}
+
+			for (FileStatus physicalTableStatus : fs.listStatus(taskStatus.getPath())) {
+				if (physicalTableStatus.getPath().getName().equals(dataTableName)) {
+					dataTableDirList.add(physicalTableStatus.getPath());
+				} else {
+					indexTableDirList.add(physicalTableStatus.getPath());
+				}
+			}
+		}
+
+		try {
+			for (Path indexTableDir : indexTableDirList) {
+				loadFiles(loader, hconnection, indexTableDir);
+			}
+
+			for (Path dataTableDir : dataTableDirList) {
+				loadFiles(loader, hconnection, dataTableDir);
+			}
+		} finally {
+			PhoenixConnectionRegistry.getInstance().release(hconnection);
+		}
+	}
+
+	private void loadFiles(LoadIncrementalHFiles loader, HConnection hconnection, Path physicalTableDir) throws Exception {
+		String physicalTableName = physicalTableDir.getName();
+
+		if (LOG.isInfoEnabled()) {
+			LOG.info("<<<<<<<<<< bulk load " + physicalTableDir + " into " + physicalTableName + " >>>>>>>>>>");
+		}
+
+		try (HTable table = new HTable(TableName.valueOf(physicalTableName), hconnection)) {
+			loader.doBulkLoad(physicalTableDir, table);
+		}
+	}
+
+	// zookeeper of the table as configureJobProperties of storage handler.
+	private Configuration getHBaseConfiguration(Configuration config, Map<String, String> tableParameterMap) {
+		Configuration hbaseConfig = new Configuration(config);
+
+		String quorum = tableParameterMap.get(PhoenixStorageHandlerConstants.ZOOKEEPER_QUORUM);
+		String port = tableParameterMap.get(PhoenixStorageHandlerConstants.ZOOKEEPER_PORT);
+		String parent = tableParameterMap.get(PhoenixStorageHandlerConstants.ZOOKEEPER_PARENT);
+
+		hbaseConfig.set(HConstants.ZOOKEEPER_QUORUM, quorum == null ? PhoenixStorageHandlerConstants.DEFAULT_ZOOKEEPER_QUORUM : quorum);
+		hbaseConfig.set(HConstants.ZOOKEEPER_CLIENT_PORT, port == null ? String.valueOf(PhoenixStorageHandlerConstants.DEFAULT_ZOOKEEPER_PORT) : port);
+		hbaseConfig.set(HConstants.ZOOKEEPER_ZNODE_PARENT, parent == null ? PhoenixStorageHandlerConstants.DEFAULT_ZOOKEEPER_PARENT : parent);
+
+		return hbaseConfig;
+	}
+}
@@ -29,15 +29,21 @@ import org.apache.hadoop.hive.metastore.HiveMetaHook;
 import org.apache.hadoop.hive.metastore.TableType;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
 import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.Order;
 import org.apache.hadoop.hive.metastore.api.Table;
 import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
 import org.apache.phoenix.hive.util.PhoenixConnectionUtil;
 import org.apache.phoenix.hive.util.PhoenixStorageHandlerUtil;
 import org.apache.phoenix.hive.util.PhoenixUtil;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.util.PhoenixRuntime;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * @author JeongMin Ju
@@ -78,6 +84,10 @@ public class PhoenixMetaHook implements HiveMetaHook {
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("<<<<<<<<<< " + tableName + " phoenix table created >>>>>>>>>>");
 			}
+			
+			if (Boolean.parseBoolean(table.getParameters().get(PhoenixStorageHandlerConstants.PHOENIX_BUCKETING))) {
+				setBucketing(conn, table, tableName);
+			}
 		} catch (SQLException e) {
 			throw new MetaException(e.getMessage());
 		}
@@ -149,6 +159,55 @@ public class PhoenixMetaHook implements HiveMetaHook {
 		return statement;
 	}
 	
+	/**
+	 * Row key of salted phoenix table is published as sort columns of hive table. Each split reads a salt bucket in row key order.
+	 * Bucket columns and number of buckets are not published, because salt bucket is not computed by hive bucketing hash
+	 * and bucketed join or insert of hive would pair rows of different keys.
+	 */
+	private void setBucketing(Connection conn, Table table, String tableName) throws SQLException {
+		PTable pTable = PhoenixRuntime.getTable(conn, tableName.toUpperCase());
+		Integer bucketNum = pTable.getBucketNum();
+		
+		if (bucketNum == null) {
+			LOG.warn("<<<<<<<<<< " + tableName + " is not salted. " + PhoenixStorageHandlerConstants.PHOENIX_BUCKETING + " is ignored. >>>>>>>>>>");
+			return;
+		}
+		
+		// phoenix column name to hive column name.
+		Map<String, String> columnMappingMap = getColumnMappingMap(table.getParameters().get(PhoenixStorageHandlerConstants.PHOENIX_COLUMN_MAPPING));
+		Map<String, String> hiveColumnMap = Maps.newHashMap();
+		for (FieldSchema fieldSchema : table.getSd().getCols()) {
+			String columnName = columnMappingMap.get(fieldSchema.getName());
+			if (columnName == null) {
+				columnName = fieldSchema.getName();
+			}
+			
+			hiveColumnMap.put(Splitter.on('(').trimResults().split(columnName).iterator().next().toUpperCase(), fieldSchema.getName());
+		}
+		
+		List<Order> sortColumnList = Lists.newArrayList();
+		List<PColumn> pkColumnList = pTable.getPKColumns();
+		
+		// first pk column is salt byte.
+		for (int i = 1, limit = pkColumnList.size(); i < limit; i++) {
+			PColumn pkColumn = pkColumnList.get(i);
+			String hiveColumnName = hiveColumnMap.get(pkColumn.getName().getString());
+			
+			if (hiveColumnName == null) {
+				LOG.warn("<<<<<<<<<< row key column " + pkColumn.getName().getString() + " not exist in hive table. " + PhoenixStorageHandlerConstants.PHOENIX_BUCKETING + " is ignored. >>>>>>>>>>");
+				return;
+			}
+			
+			sortColumnList.add(new Order(hiveColumnName, pkColumn.getSortOrder() == SortOrder.DESC ? 0 : 1));
+		}
+		
+		table.getSd().setSortCols(sortColumnList);
+		
+		if (LOG.isInfoEnabled()) {
+			LOG.info("<<<<<<<<<< [salt buckets, sort columns] : [" + bucketNum + ", " + sortColumnList + "] >>>>>>>>>>");
+		}
+	}
+	
 	private String getRowKeyMapping(String rowKeyName, List<String> phoenixRowKeyList) {
 		String rowKeyMapping = null;
 		
@@ -18,9 +18,9 @@
 package org.apache.phoenix.hive;
 
 import java.util.List;
-import java.util.Map;
 
 import org.apache.hadoop.hive.serde2.StructObject;
+import org.apache.phoenix.hive.mapreduce.PhoenixResultWritable;
 
 import com.google.common.collect.Lists;
 
@@ -31,24 +31,44 @@ import com.google.common.collect.Lists;
 public class PhoenixRow implements StructObject {
 
 	private List<String> columnList;
-	private Map<String, Object> resultRowMap;
+	private PhoenixResultWritable resultRow;
+	
+	// position of each field in result. resolved again only when result columns are changed.
+	private String[] mappedColumnNames;
+	private int[] fieldIndexes;
 	
 	public PhoenixRow(List<String> columnList) {
 		this.columnList = columnList;
 	}
 
-	public PhoenixRow setResultRowMap(Map<String, Object> resultRowMap) {
-		this.resultRowMap = resultRowMap;
+	public PhoenixRow setResultRow(PhoenixResultWritable resultRow) {
+		this.resultRow = resultRow;
+		
+		if (mappedColumnNames != resultRow.getColumnNames()) {
+			mapFields();
+		}
 		
 		return this;
 	}
 
+	private void mapFields() {
+		fieldIndexes = new int[columnList.size()];
+		
+		for (int i = 0, limit = columnList.size(); i < limit; i++) {
+			fieldIndexes[i] = resultRow.getColumnIndex(columnList.get(i));
+		}
+		
+		mappedColumnNames = resultRow.getColumnNames();
+	}
+
 	/* (non-Javadoc)
 	 * @see org.apache.hadoop.hive.serde2.StructObject#getField(int)
 	 */
 	@Override
 	public Object getField(int fieldID) {
-		return resultRowMap.get(columnList.get(fieldID));
+		int fieldIndex = fieldIndexes[fieldID];
+		
+		return fieldIndex < 0 ? null : resultRow.getValue(fieldIndex);
 	}
 
 	/* (non-Javadoc)
@@ -56,13 +76,19 @@ public class PhoenixRow implements StructObject {
 	 */
 	@Override
 	public List<Object> getFieldsAsList() {
-		return Lists.newArrayList(resultRowMap.values());
+		List<Object> fieldList = Lists.newArrayListWithExpectedSize(fieldIndexes.length);
+		
+		for (int i = 0; i < fieldIndexes.length; i++) {
+			fieldList.add(getField(i));
+		}
+		
+		return fieldList;
 	}
 
 
 	@Override
 	public String toString() {
-		return resultRowMap.toString();
+		return resultRow.getResultMap().toString();
 	}
 
 }
@@ -89,13 +89,14 @@ public class PhoenixSerDe extends AbstractSerDe {
 		}
 
 		serializer = new PhoenixSerializer(conf, tbl);
-		row = new PhoenixRow(Lists.transform(serdeParams.getColumnNames(), new Function<String, String>() {
+		// copied because transformed list calls function on every get.
+		row = new PhoenixRow(Lists.newArrayList(Lists.transform(serdeParams.getColumnNames(), new Function<String, String>() {
 			
 			@Override
 			public String apply(String input) {
 				return input.toUpperCase();
 			}
-		}));
+		})));
 	}
 
 	@Override
@@ -104,7 +105,7 @@ public class PhoenixSerDe extends AbstractSerDe {
 			throw new SerDeException(result.getClass().getName() + ": expects PhoenixResultWritable!");
 		}
 
-		return row.setResultRowMap(((PhoenixResultWritable)result).getResultMap());
+		return row.setResultRow((PhoenixResultWritable)result);
 	}
 
 	@Override
@@ -39,7 +39,7 @@ import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Writable;
 import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
 import org.apache.phoenix.hive.mapreduce.PhoenixResultWritable;
-import org.apache.phoenix.hive.util.PhoenixConnectionUtil;
+import org.apache.phoenix.hive.util.PhoenixConnectionRegistry;
 import org.apache.phoenix.hive.util.PhoenixStorageHandlerUtil;
 import org.apache.phoenix.hive.util.PhoenixUtil;
 import org.apache.phoenix.util.ColumnInfo;
@@ -64,7 +64,10 @@ public class PhoenixSerializer {
 	private PhoenixResultWritable pResultWritable;
 	
 	public PhoenixSerializer(Configuration config, Properties tbl) throws SerDeException {
-		try(Connection conn = PhoenixConnectionUtil.getInputConnection(config, tbl)) {
+		PhoenixConnectionRegistry connectionRegistry = PhoenixConnectionRegistry.getInstance();
+		Connection conn = null;
+		try {
+			conn = connectionRegistry.getConnection(config, tbl);
 			List<ColumnInfo> columnMetadata = PhoenixUtil.getColumnInfoList(conn, tbl.getProperty(PhoenixStorageHandlerConstants.PHOENIX_TABLE_NAME));
 			
 			columnCount = columnMetadata.size();
@@ -76,6 +79,8 @@ public class PhoenixSerializer {
 			pResultWritable = new PhoenixResultWritable(config, columnMetadata);
 		} catch (SQLException | IOException e) {
 			throw new SerDeException(e);
+		} finally {
+			connectionRegistry.release(conn);
 		}
 	}
 
@@ -42,6 +42,7 @@ import org.apache.hadoop.mapred.OutputFormat;
 import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
 import org.apache.phoenix.hive.mapreduce.PhoenixInputFormat;
 import org.apache.phoenix.hive.mapreduce.PhoenixOutputFormat;
+import org.apache.phoenix.hive.query.PhoenixPredicateTranslator;
 import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
 
 /**
@@ -135,6 +136,7 @@ public class PhoenixStorageHandler extends DefaultStorageHandler implements Hive
 		jobProperties.put(PhoenixStorageHandlerConstants.ZOOKEEPER_QUORUM, tableProperties.getProperty(PhoenixStorageHandlerConstants.ZOOKEEPER_QUORUM, PhoenixStorageHandlerConstants.DEFAULT_ZOOKEEPER_QUORUM));
 		jobProperties.put(PhoenixStorageHandlerConstants.ZOOKEEPER_PORT, tableProperties.getProperty(PhoenixStorageHandlerConstants.ZOOKEEPER_PORT, String.valueOf(PhoenixStorageHandlerConstants.DEFAULT_ZOOKEEPER_PORT)));
 		jobProperties.put(PhoenixStorageHandlerConstants.ZOOKEEPER_PARENT, tableProperties.getProperty(PhoenixStorageHandlerConstants.ZOOKEEPER_PARENT, PhoenixStorageHandlerConstants.DEFAULT_ZOOKEEPER_PARENT));
+		jobProperties.put(tableName.toLowerCase() + PhoenixStorageHandlerConstants.BUCKETING, tableProperties.getProperty(PhoenixStorageHandlerConstants.PHOENIX_BUCKETING, Boolean.FALSE.toString()));
 		
 		jobProperties.put(hive_metastoreConstants.META_TABLE_STORAGE, this.getClass().getName());
 		
@@ -165,7 +167,8 @@ public class PhoenixStorageHandler extends DefaultStorageHandler implements Hive
 //		return predicateDecomposer.decomposePredicate(predicate);
 		
 		// 2016-04-04 modified by JeongMin Ju : Changed predicate push down processing to tez-way. reference PhoenixInputFormat.getSplits.
-		return null;
+		// Conjuncts translated exactly are removed from residual of hive. Pushed where clause is handed over as filter object.
+		return new PhoenixPredicateTranslator(jobConf.getBoolean(PhoenixStorageHandlerConstants.BIND_VARIABLES, false)).decompose(predicate);
 	}
 
 	@Override
@@ -45,12 +45,39 @@ public class PhoenixStorageHandlerConstants {
     public static final String PHOENIX_ROWKEYS = "phoenix.rowkeys";
     public static final String PHOENIX_COLUMN_MAPPING = "phoenix.column.mapping";
     public static final String PHOENIX_TABLE_OPTIONS = "phoenix.table.options";
+    public static final String PHOENIX_BUCKETING = "phoenix.bucketing";
     
     public static final String PHOENIX_TABLE_QUERY_HINT = ".query.hint";
     public static final String PHOENIX_REDUCER_NUMBER = ".reducer.count";
     public static final String DISABLE_WAL = ".disable.wal";
     public static final String BATCH_MODE = "batch.mode";
     public static final String AUTO_FLUSH = ".auto.flush";
+    public static final String DIRECT_WRITE = ".direct.write";
+    public static final String BULK_LOAD = ".bulk.load";
+    public static final String BULK_LOAD_DIR = "phoenix.bulk.load.dir";
+    public static final String DEFAULT_BULK_LOAD_DIR = "/tmp/phoenix-bulkload";
+    public static final String BULK_LOAD_BUFFER_BYTES = "phoenix.bulk.load.buffer.bytes";
+    public static final long DEFAULT_BULK_LOAD_BUFFER_BYTES = 128 * 1024 * 1024L;
+    public static final String ASYNC_COMMITS = "phoenix.upsert.async.commits";
+    public static final String ADAPTIVE_BATCH = "phoenix.upsert.adaptive.batch";
+    public static final String BATCH_BYTES = "phoenix.upsert.batch.bytes";
+    public static final long DEFAULT_BATCH_BYTES = 2 * 1024 * 1024L;
+    public static final String BATCH_BYTES_MIN = "phoenix.upsert.batch.bytes.min";
+    public static final long DEFAULT_BATCH_BYTES_MIN = 256 * 1024L;
+    public static final String BATCH_BYTES_MAX = "phoenix.upsert.batch.bytes.max";
+    public static final long DEFAULT_BATCH_BYTES_MAX = 32 * 1024 * 1024L;
+    public static final String COMMIT_TARGET_LATENCY = "phoenix.upsert.commit.target.latency";
+    public static final long DEFAULT_COMMIT_TARGET_LATENCY = 1000L;
+    public static final String COMMIT_RETRIES = "phoenix.upsert.commit.retries";
+    public static final int DEFAULT_COMMIT_RETRIES = 3;
+    public static final String COMMIT_RETRY_PAUSE = "phoenix.upsert.commit.retry.pause";
+    public static final long DEFAULT_COMMIT_RETRY_PAUSE = 1000L;
+    public static final String PREFETCH_THREADS = ".prefetch.threads";
+    public static final String PREFETCH_DEPTH = ".prefetch.depth";
+    public static final int DEFAULT_PREFETCH_DEPTH = 1000;
+    public static final String BUCKETING = ".bucketing";
+    public static final String LAZY_DECODE = ".lazy.decode";
+    public static final String BINARY_DECODE = ".binary.decode";
     
     public static final String COLON = ":";
 	public static final String COMMA = ",";
@@ -66,6 +93,27 @@ public class PhoenixStorageHandlerConstants {
 	public static final String SPLIT_BY_STATS = "split.by.stats";
 	public static final String HBASE_SCAN_CACHE = "hbase.scan.cache";
 	public static final String HBASE_SCAN_CACHEBLOCKS = "hbase.scan.cacheblock";
+	public static final String SPLIT_CACHE_ENABLED = "phoenix.split.cache.enabled";
+	public static final String SPLIT_CACHE_TTL = "phoenix.split.cache.ttl";
+	public static final long DEFAULT_SPLIT_CACHE_TTL = 10 * 60 * 1000L;
+	public static final String SPLIT_CACHE_MAX_ENTRIES = "phoenix.split.cache.max.entries";
+	public static final int DEFAULT_SPLIT_CACHE_MAX_ENTRIES = 100;
+	public static final String SPLIT_LOOKUP_THREADS = "phoenix.split.lookup.threads";
+	public static final int DEFAULT_SPLIT_LOOKUP_THREADS = 16;
+	public static final String SPLIT_LOOKUP_TIMEOUT = "phoenix.split.lookup.timeout";
+	public static final long DEFAULT_SPLIT_LOOKUP_TIMEOUT = 60 * 1000L;
+	public static final String SPLIT_TARGET_BYTES = "phoenix.split.target.bytes";
+	public static final String SPLIT_LOCALITY = "phoenix.split.locality";
+	public static final String SPLIT_LOCALITY_HOST = "host";
+	public static final String SPLIT_LOCALITY_NONE = "none";
+	public static final String DEFAULT_SPLIT_LOCALITY = SPLIT_LOCALITY_HOST;
+	public static final String SPLIT_COMPRESS = "phoenix.split.compress";
+	public static final String BIND_VARIABLES = "phoenix.query.bind.variables";
+	public static final String CONNECTION_IDLE_TIMEOUT = "phoenix.connection.idle.timeout";
+	public static final long DEFAULT_CONNECTION_IDLE_TIMEOUT = 10 * 60 * 1000L;
+	public static final String CONNECTION_LEAK_DETECTION = "phoenix.connection.leak.detection";
+	public static final String TASK_PLAN_LIGHTWEIGHT = "phoenix.task.plan.lightweight";
+	public static final String VECTORIZED_BATCH_SIZE = "phoenix.vectorized.batch.size";
 	public static final String HBASE_DATE_FORMAT = "hbase.date.format";
 	public static final String HBASE_TIMESTAMP_FORMAT = "hbase.timestamp.format";
 	public static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd";
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.mapreduce;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Commits batches of a writer on a background thread.
+ *
+ * Each batch is filled on its own connection because phoenix connection is not thread safe. While batches are committed,
+ * the writer fills the next one on a free connection. The number of free connections bounds the batches in flight.
+ * Batches are committed one by one in submitted order, so a later batch overwrites an earlier one as in synchronous commit.
+ * After a commit fails, following batches are rolled back and the failure is reported at the next call of the writer.
+ */
+public class PhoenixAsyncCommitter {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixAsyncCommitter.class);
+
+	private final ExecutorService executor;
+	private final PhoenixCommitPolicy commitPolicy;
+	private final BlockingQueue<Connection> freeConnections;
+	private final AtomicReference<SQLException> error = new AtomicReference<>();
+
+	private final AtomicInteger inFlightCount = new AtomicInteger();
+	private final AtomicLong commitCount = new AtomicLong();
+	private final AtomicLong commitNanos = new AtomicLong();
+	private final AtomicLong maxCommitNanos = new AtomicLong();
+	private int maxInFlightCount;
+	private long waitNanos;
+
+	/**
+	 * Connections other than the one being filled by the writer. Batch is committed through commit policy if given.
+	 */
+	public PhoenixAsyncCommitter(List<Connection> freeConnectionList, PhoenixCommitPolicy commitPolicy) {
+		this.commitPolicy = commitPolicy;
+		freeConnections = new LinkedBlockingQueue<>(freeConnectionList);
+		executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("phoenix-commit-%d").build());
+	}
+
+	/**
+	 * Commit of the batch filled on connection is started. Returns a free connection for the next batch.
+	 * Blocks while all other connections are in flight.
+	 */
+	public Connection submit(final Connection connection) throws SQLException {
+		checkError();
+
+		maxInFlightCount = Math.max(maxInFlightCount, inFlightCount.incrementAndGet());
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				long startTime = System.nanoTime();
+
+				try {
+					if (error.get() != null) {
+						connection.rollback();
+					} else if (commitPolicy != null) {
+						commitPolicy.commit(connection);
+					} else {
+						connection.commit();
+					}
+				} catch (SQLException | RuntimeException e) {
+					error.compareAndSet(null, e instanceof SQLException ? (SQLException)e : new SQLException(e));
+					rollbackQuietly(connection);
+				} finally {
+					long elapsedTime = System.nanoTime() - startTime;
+					commitCount.incrementAndGet();
+					commitNanos.addAndGet(elapsedTime);
+					long max = maxCommitNanos.get();
+					while (elapsedTime > max && !maxCommitNanos.compareAndSet(max, elapsedTime)) {
+						max = maxCommitNanos.get();
+					}
+
+					inFlightCount.decrementAndGet();
+					freeConnections.add(connection);
+				}
+			}
+		});
+
+		long startTime = System.nanoTime();
+		try {
+			return freeConnections.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException(e);
+		} finally {
+			waitNanos += System.nanoTime() - startTime;
+		}
+	}
+
+	/**
+	 * Throws the first commit failure if any.
+	 */
+	public void checkError() throws SQLException {
+		SQLException e = error.get();
+		if (e != null) {
+			throw new SQLException("Asynchronous commit failed.", e);
+		}
+	}
+
+	/**
+	 * Waits until all submitted batches are committed.
+	 */
+	public void await() throws SQLException {
+		try {
+			// single thread executes in submitted order.
+			executor.submit(new Runnable() {
+
+				@Override
+				public void run() {
+				}
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException(e);
+		} catch (ExecutionException e) {
+			throw new SQLException(e.getCause());
+		}
+
+		checkError();
+	}
+
+	public void close() {
+		executor.shutdown();
+
+		try {
+			if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				LOG.warn("<<<<<<<<<< commit thread not terminated >>>>>>>>>>");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public String getMetrics() {
+		long count = commitCount.get();
+
+		return "[commit, avgCommitMillis, maxCommitMillis, maxInFlight, waitMillis] : [" + count + ", " +
+				(count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(commitNanos.get() / count)) + ", " + TimeUnit.NANOSECONDS.toMillis(maxCommitNanos.get()) + ", " +
+				maxInFlightCount + ", " + TimeUnit.NANOSECONDS.toMillis(waitNanos) + "]";
+	}
+
+	private void rollbackQuietly(Connection connection) {
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			LOG.warn("Failed to rollback : " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.mapreduce;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+
+/**
+ * Decides when a batch of writer is committed by estimated bytes of mutations instead of row count.
+ *
+ * Target size of a batch is adjusted by commit latency within bounds. It is halved if a commit takes longer than target latency or fails,
+ * and grows by the lower bound if a commit takes less than half of target latency.
+ * Failed commit is retried while the connection still has uncommitted rows, because upsert and delete can be sent again.
+ */
+public class PhoenixCommitPolicy {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixCommitPolicy.class);
+
+	// cell overhead of a value : row key, family, qualifier, timestamp and type.
+	private static final int CELL_OVERHEAD = 48;
+
+	private final long minBytes;
+	private final long maxBytes;
+	private final long targetLatencyMillis;
+	private final int retries;
+	private final long retryPauseMillis;
+
+	// adjusted by commit thread and read by writer thread.
+	private volatile long targetBytes;
+	private long pendingBytes;
+
+	private long commitCount;
+	private long failureCount;
+
+	public PhoenixCommitPolicy(Configuration config) {
+		minBytes = config.getLong(PhoenixStorageHandlerConstants.BATCH_BYTES_MIN, PhoenixStorageHandlerConstants.DEFAULT_BATCH_BYTES_MIN);
+		maxBytes = Math.max(minBytes, config.getLong(PhoenixStorageHandlerConstants.BATCH_BYTES_MAX, PhoenixStorageHandlerConstants.DEFAULT_BATCH_BYTES_MAX));
+		targetLatencyMillis = config.getLong(PhoenixStorageHandlerConstants.COMMIT_TARGET_LATENCY, PhoenixStorageHandlerConstants.DEFAULT_COMMIT_TARGET_LATENCY);
+		retries = config.getInt(PhoenixStorageHandlerConstants.COMMIT_RETRIES, PhoenixStorageHandlerConstants.DEFAULT_COMMIT_RETRIES);
+		retryPauseMillis = config.getLong(PhoenixStorageHandlerConstants.COMMIT_RETRY_PAUSE, PhoenixStorageHandlerConstants.DEFAULT_COMMIT_RETRY_PAUSE);
+
+		long initialBytes = config.getLong(PhoenixStorageHandlerConstants.BATCH_BYTES, PhoenixStorageHandlerConstants.DEFAULT_BATCH_BYTES);
+		targetBytes = Math.min(maxBytes, Math.max(minBytes, initialBytes));
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<<<<<<<<<< [targetBytes, minBytes, maxBytes, targetLatencyMillis] : [" + targetBytes + ", " + minBytes + ", " + maxBytes + ", " + targetLatencyMillis + "] >>>>>>>>>>");
+		}
+	}
+
+	/**
+	 * Estimated bytes of mutation for the values of a row.
+	 */
+	public static long estimateSize(List<Object> valueList) {
+		long size = 0;
+
+		for (Object value : valueList) {
+			size += CELL_OVERHEAD;
+
+			if (value instanceof String) {
+				size += Bytes.toBytes((String)value).length;
+			} else if (value instanceof byte[]) {
+				size += ((byte[])value).length;
+			} else if (value instanceof BigDecimal) {
+				size += ((BigDecimal)value).unscaledValue().bitLength() / 8 + 2;
+			} else if (value != null) {
+				size += Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT;
+			}
+		}
+
+		return size;
+	}
+
+	/**
+	 * Adds bytes of a row to the current batch. Returns true if the batch must be committed.
+	 */
+	public boolean add(long bytes) {
+		pendingBytes += bytes;
+
+		if (pendingBytes < targetBytes) {
+			return false;
+		}
+
+		pendingBytes = 0;
+		return true;
+	}
+
+	/**
+	 * Commits connection with retry and adjusts target size by the result.
+	 */
+	public void commit(Connection connection) throws SQLException {
+		for (int attempt = 0; ; attempt++) {
+			long startTime = System.currentTimeMillis();
+
+			try {
+				connection.commit();
+				onCommitted(System.currentTimeMillis() - startTime);
+
+				return;
+			} catch (SQLException e) {
+				onFailed();
+
+				// rows sent before failure are sent again. upsert and delete are idempotent.
+				int remainingRows = connection.unwrap(PhoenixConnection.class).getMutationState().getUpdateCount();
+				if (attempt >= retries || remainingRows == 0) {
+					throw e;
+				}
+
+				LOG.warn("<<<<<<<<<< commit failed. retry " + (attempt + 1) + " of " + retries + " with " + remainingRows + " rows. target bytes : " + targetBytes + " >>>>>>>>>>", e);
+
+				try {
+					Thread.sleep(retryPauseMillis * (attempt + 1));
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+
+	private synchronized void onCommitted(long elapsedMillis) {
+		commitCount++;
+
+		if (elapsedMillis > targetLatencyMillis) {
+			targetBytes = Math.max(minBytes, targetBytes / 2);
+		} else if (elapsedMillis < targetLatencyMillis / 2) {
+			targetBytes = Math.min(maxBytes, targetBytes + minBytes);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<<<<<<<<<< commit took " + elapsedMillis + " ms. target bytes : " + targetBytes + " >>>>>>>>>>");
+		}
+	}
+
+	private synchronized void onFailed() {
+		failureCount++;
+		targetBytes = Math.max(minBytes, targetBytes / 2);
+	}
+
+	public long getTargetBytes() {
+		return targetBytes;
+	}
+
+	public synchronized String getMetrics() {
+		return "[commit, failure, targetBytes] : [" + commitCount + ", " + failureCount + ", " + targetBytes + "]";
+	}
+}
@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.mapreduce;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.exception.DataExceedsCapacityException;
+import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
+import org.apache.phoenix.hive.util.PhoenixConnectionRegistry;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PRow;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableType;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.SchemaUtil;
+
+/**
+ * Writes rows to HBase without UPSERT statement.
+ *
+ * Table is resolved once and each row is encoded by the codecs of phoenix table(PTable.newKey, PRow),
+ * so row key layout, salt byte, sort order and empty key value are the same as UPSERT. Mutations are sent through BufferedMutator.
+ * Tables whose mutation phoenix changes on the way are not supported. See {@link #getUnsupportedReason(PTable, int)}.
+ */
+public class PhoenixDirectMutator implements Closeable {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixDirectMutator.class);
+
+	private final PTable table;
+	private final KeyValueBuilder keyValueBuilder;
+	private final HConnection hconnection;
+	private final BufferedMutator mutator;
+
+	// column of each value in value list and its position in row key. -1 if not row key column.
+	private final PColumn[] columns;
+	private final int[] pkPositions;
+	private final byte[][] pkValues;
+
+	private final ImmutableBytesWritable rowKey = new ImmutableBytesWritable();
+	private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+
+	private long mutationCount;
+
+	private PhoenixDirectMutator(Configuration config, PhoenixConnection conn, PTable table) throws IOException {
+		this.table = table;
+		this.keyValueBuilder = conn.getKeyValueBuilder();
+
+		List<PColumn> pkColumnList = table.getPKColumns();
+		pkValues = new byte[pkColumnList.size()][];
+
+		// same order as column info list of upsert statement. salt column is not given.
+		List<PColumn> columnList = table.getColumns();
+		int offset = table.getBucketNum() == null ? 0 : 1;
+		columns = new PColumn[columnList.size() - offset];
+		pkPositions = new int[columns.length];
+
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = columnList.get(i + offset);
+			pkPositions[i] = SchemaUtil.isPKColumn(columns[i]) ? pkColumnList.indexOf(columns[i]) : -1;
+		}
+
+		hconnection = PhoenixConnectionRegistry.getInstance().getHConnection(config);
+		try {
+			mutator = hconnection.getBufferedMutator(TableName.valueOf(table.getPhysicalName().getString()));
+		} catch (IOException e) {
+			PhoenixConnectionRegistry.getInstance().release(hconnection);
+			throw e;
+		}
+	}
+
+	/**
+	 * Mutator of table or null if the table can not be written directly.
+	 */
+	public static PhoenixDirectMutator create(Configuration config, PhoenixConnection conn, String tableName, int columnCount) throws SQLException, IOException {
+		PTable table = PhoenixRuntime.getTable(conn, tableName.toUpperCase());
+		String unsupportedReason = getUnsupportedReason(table, columnCount);
+
+		if (unsupportedReason != null) {
+			LOG.warn("<<<<<<<<<< " + tableName + " can not be written directly : " + unsupportedReason + ". upsert statement is used. >>>>>>>>>>");
+			return null;
+		}
+
+		if (LOG.isInfoEnabled()) {
+			LOG.info("<<<<<<<<<< " + tableName + " is written directly to " + table.getPhysicalName().getString() + " >>>>>>>>>>");
+		}
+
+		return new PhoenixDirectMutator(config, conn, table);
+	}
+
+	/**
+	 * Index rows are maintained by phoenix client or coprocessor only for UPSERT, and row timestamp column and tenant id
+	 * change cells written by UPSERT. Such tables are refused. Null if supported.
+	 */
+	public static String getUnsupportedReason(PTable table, int columnCount) {
+		if (table.getType() != PTableType.TABLE) {
+			return "table type is " + table.getType();
+		} else if (!table.getIndexes().isEmpty()) {
+			return "table has index";
+		} else if (table.isMultiTenant() || table.getViewIndexId() != null) {
+			return "table is multi tenant";
+		} else if (table.getRowTimestampColPos() >= 0) {
+			return "table has row timestamp column";
+		} else if (table.getColumns().size() - (table.getBucketNum() == null ? 0 : 1) != columnCount) {
+			return "column count differs";
+		}
+
+		return null;
+	}
+
+	/**
+	 * Values are in the order of columns of upsert statement. Missing trailing values are null.
+	 */
+	public void mutate(List<Object> valueList) throws IOException {
+		PColumn column = null;
+		Object value = null;
+
+		try {
+			Arrays.fill(pkValues, ByteUtil.EMPTY_BYTE_ARRAY);
+			for (int i = 0; i < columns.length; i++) {
+				if (pkPositions[i] >= 0) {
+					column = columns[i];
+					value = i < valueList.size() ? valueList.get(i) : null;
+					pkValues[pkPositions[i]] = toBytes(column, value, ptr);
+				}
+			}
+
+			// salt byte is computed in newKey.
+			table.newKey(rowKey, pkValues);
+			PRow row = table.newRow(keyValueBuilder, rowKey);
+
+			for (int i = 0; i < columns.length; i++) {
+				if (pkPositions[i] < 0) {
+					column = columns[i];
+					value = i < valueList.size() ? valueList.get(i) : null;
+					row.setValue(column, toBytes(column, value, ptr));
+				}
+			}
+
+			List<Mutation> mutationList = row.toRowMutations();
+			if (table.isWALDisabled()) {
+				for (Mutation mutation : mutationList) {
+					mutation.setDurability(Durability.SKIP_WAL);
+				}
+			}
+
+			mutator.mutate(mutationList);
+			mutationCount += mutationList.size();
+		} catch (RuntimeException e) {
+			LOG.error("<<<<<<<<<< [column, value] : " + column + ", " + value + " >>>>>>>>>>");
+
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Same coercion as upsert. Value is converted to column type, checked for size and written in sort order of column.
+	 */
+	public static byte[] toBytes(PColumn column, Object value, ImmutableBytesWritable ptr) {
+		if (value == null) {
+			return ByteUtil.EMPTY_BYTE_ARRAY;
+		}
+
+		PDataType type = column.getDataType();
+		PDataType valueType = null;
+		try {
+			valueType = PDataType.fromLiteral(value);
+		} catch (UnsupportedOperationException e) {
+			throw new IllegalArgumentException("Unsupported value type of column " + column.getName().getString() + " : " + value.getClass().getName(), e);
+		}
+
+		Object converted = type.toObject(value, valueType);
+		ptr.set(type.toBytes(converted));
+
+		if (!type.isSizeCompatible(ptr, converted, type, null, null, column.getMaxLength(), column.getScale())) {
+			throw new DataExceedsCapacityException(type, column.getMaxLength(), column.getScale());
+		}
+		type.coerceBytes(ptr, converted, type, null, null, SortOrder.getDefault(), column.getMaxLength(), column.getScale(), column.getSortOrder());
+
+		return ByteUtil.copyKeyBytesIfNecessary(ptr);
+	}
+
+	public void flush() throws IOException {
+		mutator.flush();
+	}
+
+	public long getMutationCount() {
+		return mutationCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			mutator.close();
+		} finally {
+			PhoenixConnectionRegistry.getInstance().release(hconnection);
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.mapreduce;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
+import org.apache.phoenix.hive.util.PhoenixConnectionRegistry;
+import org.apache.phoenix.hive.util.PhoenixStorageHandlerUtil;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Writes key values of a task into HFiles to be bulk loaded.
+ *
+ * Key values are buffered sorted per physical table. When the buffer is full, they are written into one HFile per region and column family,
+ * so a task makes several sorted HFiles per region instead of requiring input sorted by row key.
+ * Files are written under a temporary directory of the task and moved to the directory of the query on close.
+ * They are loaded by {@link org.apache.phoenix.hive.PhoenixBulkLoadHook} after the query succeeds.
+ *
+ * Directory layout : [bulk load dir]/[query id]/[phoenix table]/[task directory]/[physical table]/[column family]/[hfile]
+ */
+public class PhoenixHFileWriter {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixHFileWriter.class);
+
+	public static final String TEMPORARY_DIR_NAME = "_temporary";
+
+	private final Configuration config;
+	private final FileSystem fs;
+	private final Path taskDir;
+	private final Path committedTaskDir;
+	private final long bufferBytes;
+	// timestamp of current batch. increases by batch so that a cell of a later batch is newer than a delete marker of an earlier one.
+	private long timestamp = System.currentTimeMillis();
+
+	private final HConnection hconnection;
+	private final CacheConfig cacheConfig;
+
+	// physical table name to sorted key values
+	private final Map<String, TreeSet<KeyValue>> bufferMap = Maps.newHashMap();
+	private final Map<String, byte[][]> startKeysMap = Maps.newHashMap();
+	private final Map<String, HTableDescriptor> tableDescriptorMap = Maps.newHashMap();
+	private long bufferedBytes;
+
+	private long keyValueCount;
+	private int fileCount;
+
+	public PhoenixHFileWriter(Configuration config, String tableName) throws IOException {
+		this.config = config;
+
+		Path queryDir = getQueryDir(config, config.get(HiveConf.ConfVars.HIVEQUERYID.varname));
+		String taskDirName = UUID.randomUUID().toString();
+		taskDir = new Path(new Path(new Path(queryDir, tableName.toUpperCase()), TEMPORARY_DIR_NAME), taskDirName);
+		committedTaskDir = new Path(new Path(queryDir, tableName.toUpperCase()), taskDirName);
+		fs = taskDir.getFileSystem(config);
+		bufferBytes = config.getLong(PhoenixStorageHandlerConstants.BULK_LOAD_BUFFER_BYTES, PhoenixStorageHandlerConstants.DEFAULT_BULK_LOAD_BUFFER_BYTES);
+
+		// block cache is not used for writing.
+		Configuration cacheConf = new Configuration(config);
+		cacheConf.setFloat(HConstants.HFILE_BLOCK_CACHE_SIZE_KEY, 0.0f);
+		cacheConfig = new CacheConfig(cacheConf);
+
+		hconnection = PhoenixConnectionRegistry.getInstance().getHConnection(config);
+
+		if (LOG.isInfoEnabled()) {
+			LOG.info("<<<<<<<<<< hfiles of " + tableName + " are written to " + taskDir + " >>>>>>>>>>");
+		}
+	}
+
+	/**
+	 * Directory of hfiles written by a query.
+	 */
+	public static Path getQueryDir(Configuration config, String queryId) {
+		return new Path(config.get(PhoenixStorageHandlerConstants.BULK_LOAD_DIR, PhoenixStorageHandlerConstants.DEFAULT_BULK_LOAD_DIR), queryId);
+	}
+
+	/**
+	 * Key values added after this get a timestamp greater than those of the previous batch.
+	 */
+	public void newBatch() {
+		timestamp = Math.max(System.currentTimeMillis(), timestamp + 1);
+	}
+
+	/**
+	 * Key values with latest timestamp get the timestamp of current batch. The last one wins if the same cell is added again in a batch.
+	 */
+	public void add(byte[] physicalTableName, List<KeyValue> keyValueList) throws IOException {
+		String tableName = Bytes.toString(physicalTableName);
+		TreeSet<KeyValue> buffer = bufferMap.get(tableName);
+
+		if (buffer == null) {
+			buffer = new TreeSet<>(KeyValue.COMPARATOR);
+			bufferMap.put(tableName, buffer);
+		}
+
+		for (KeyValue keyValue : keyValueList) {
+			keyValue.updateLatestStamp(Bytes.toBytes(timestamp));
+
+			if (!buffer.add(keyValue)) {
+				buffer.remove(keyValue);
+				buffer.add(keyValue);
+			} else {
+				bufferedBytes += keyValue.heapSize();
+			}
+		}
+
+		if (bufferedBytes >= bufferBytes) {
+			flush();
+		}
+	}
+
+	/**
+	 * Buffered key values are written to new hfiles.
+	 */
+	public void flush() throws IOException {
+		for (Entry<String, TreeSet<KeyValue>> entry : bufferMap.entrySet()) {
+			if (!entry.getValue().isEmpty()) {
+				writeTable(entry.getKey(), entry.getValue());
+				entry.getValue().clear();
+			}
+		}
+
+		bufferedBytes = 0;
+	}
+
+	private void writeTable(String tableName, TreeSet<KeyValue> buffer) throws IOException {
+		byte[][] startKeys = getStartKeys(tableName);
+		HTableDescriptor tableDescriptor = getTableDescriptor(tableName);
+		Path tableDir = new Path(taskDir, tableName);
+
+		Map<byte[], StoreFile.Writer> writerMap = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+		int currentRegion = -1;
+
+		try {
+			for (KeyValue keyValue : buffer) {
+				int region = PhoenixStorageHandlerUtil.getRegionIndex(startKeys, keyValue.getRowArray(), keyValue.getRowOffset(), keyValue.getRowLength());
+
+				// a file must not span regions.
+				if (region != currentRegion) {
+					closeWriters(writerMap);
+					currentRegion = region;
+				}
+
+				byte[] family = keyValue.getFamily();
+				StoreFile.Writer writer = writerMap.get(family);
+				if (writer == null) {
+					writer = createWriter(tableDescriptor.getFamily(family), new Path(tableDir, Bytes.toString(family)));
+					writerMap.put(family, writer);
+				}
+
+				writer.append(keyValue);
+				keyValueCount++;
+			}
+		} finally {
+			closeWriters(writerMap);
+		}
+	}
+
+	private StoreFile.Writer createWriter(HColumnDescriptor family, Path familyDir) throws IOException {
+		if (family == null) {
+			throw new IOException("Column family not exist : " + familyDir);
+		}
+
+		HFileContext fileContext = new HFileContextBuilder()
+				.withCompression(family.getCompression())
+				.withChecksumType(HStore.getChecksumType(config))
+				.withBytesPerCheckSum(HStore.getBytesPerChecksum(config))
+				.withBlockSize(family.getBlocksize())
+				.withDataBlockEncoding(family.getDataBlockEncoding())
+				.build();
+
+		fileCount++;
+
+		return new StoreFile.WriterBuilder(config, cacheConfig, fs)
+				.withOutputDir(familyDir)
+				.withBloomType(family.getBloomFilterType())
+				.withComparator(KeyValue.COMPARATOR)
+				.withFileContext(fileContext)
+				.build();
+	}
+
+	// same file info as HFileOutputFormat2.
+	private void closeWriters(Map<byte[], StoreFile.Writer> writerMap) throws IOException {
+		for (StoreFile.Writer writer : writerMap.values()) {
+			writer.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY, Bytes.toBytes(System.currentTimeMillis()));
+			writer.appendFileInfo(StoreFile.BULKLOAD_TASK_KEY, Bytes.toBytes(taskDir.getName()));
+			writer.appendFileInfo(StoreFile.MAJOR_COMPACTION_KEY, Bytes.toBytes(true));
+			writer.appendFileInfo(StoreFile.EXCLUDE_FROM_MINOR_COMPACTION_KEY, Bytes.toBytes(false));
+			writer.appendTrackedTimestampsToMetadata();
+			writer.close();
+		}
+
+		writerMap.clear();
+	}
+
+	private byte[][] getStartKeys(String tableName) throws IOException {
+		byte[][] startKeys = startKeysMap.get(tableName);
+
+		if (startKeys == null) {
+			try (RegionLocator regionLocator = hconnection.getRegionLocator(TableName.valueOf(tableName))) {
+				startKeys = regionLocator.getStartKeys();
+			}
+
+			Arrays.sort(startKeys, Bytes.BYTES_COMPARATOR);
+			startKeysMap.put(tableName, startKeys);
+		}
+
+		return startKeys;
+	}
+
+	private HTableDescriptor getTableDescriptor(String tableName) throws IOException {
+		HTableDescriptor tableDescriptor = tableDescriptorMap.get(tableName);
+
+		if (tableDescriptor == null) {
+			try (Admin admin = hconnection.getAdmin()) {
+				tableDescriptor = admin.getTableDescriptor(TableName.valueOf(tableName));
+			}
+
+			tableDescriptorMap.put(tableName, tableDescriptor);
+		}
+
+		return tableDescriptor;
+	}
+
+	/**
+	 * Remaining key values are written and files of this task are handed over to the query.
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+
+			if (fs.exists(taskDir) && !fs.rename(taskDir, committedTaskDir)) {
+				throw new IOException("Failed to move " + taskDir + " to " + committedTaskDir);
+			}
+
+			if (LOG.isInfoEnabled()) {
+				LOG.info("<<<<<<<<<< [key value, hfile] : [" + keyValueCount + ", " + fileCount + "] written to " + committedTaskDir + " >>>>>>>>>>");
+			}
+		} finally {
+			PhoenixConnectionRegistry.getInstance().release(hconnection);
+		}
+	}
+
+	/**
+	 * Files of this task are deleted.
+	 */
+	public void abort() throws IOException {
+		try {
+			bufferMap.clear();
+			fs.delete(taskDir, true);
+		} finally {
+			PhoenixConnectionRegistry.getInstance().release(hconnection);
+		}
+	}
+}
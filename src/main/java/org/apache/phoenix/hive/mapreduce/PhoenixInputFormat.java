@@ -18,26 +18,35 @@
 package org.apache.phoenix.hive.mapreduce;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.HConnection;
-import org.apache.hadoop.hbase.client.HConnectionManager;
 import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.RegionSizeCalculator;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
 import org.apache.hadoop.hive.ql.plan.TableScanDesc;
 import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.shims.ShimLoader;
@@ -50,20 +59,31 @@ import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.db.DBWritable;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.net.CachedDNSToSwitchMapping;
+import org.apache.hadoop.net.DNSToSwitchMapping;
+import org.apache.hadoop.net.NetworkTopology;
+import org.apache.hadoop.net.ScriptBasedMapping;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.phoenix.compile.QueryPlan;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
+import org.apache.phoenix.execute.ScanPlan;
 import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
+import org.apache.phoenix.hive.query.PhoenixPredicateTranslator;
+import org.apache.phoenix.hive.query.PhoenixPushedPredicate;
 import org.apache.phoenix.hive.query.PhoenixQueryBuilder;
-import org.apache.phoenix.hive.util.PhoenixConnectionUtil;
+import org.apache.phoenix.hive.util.PhoenixConnectionRegistry;
 import org.apache.phoenix.hive.util.PhoenixStorageHandlerUtil;
 import org.apache.phoenix.iterate.MapReduceParallelScanGrouper;
+import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
 import org.apache.phoenix.jdbc.PhoenixStatement;
 import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
 import org.apache.phoenix.query.KeyRange;
 import org.apache.phoenix.util.PhoenixRuntime;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * @author JeongMin Ju
@@ -74,6 +94,12 @@ public class PhoenixInputFormat<T extends DBWritable> implements InputFormat<Wri
 
 	private static final Log LOG = LogFactory.getLog(PhoenixInputFormat.class);
 	
+	private static DNSToSwitchMapping switchMapping;
+	
+	public static enum LocalityCounter {
+		DATA_LOCAL, RACK_LOCAL, REMOTE
+	}
+	
 	public PhoenixInputFormat() {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<<<<<<<<<< PhoenixInputFormat created >>>>>>>>>>");
@@ -85,6 +111,7 @@ public class PhoenixInputFormat<T extends DBWritable> implements InputFormat<Wri
 		String tableName = jobConf.get(PhoenixConfigurationUtil.INPUT_TABLE_NAME);
 //		List<IndexSearchCondition> conditionList = null;
 		String query = null;
+		List<Object> bindValues = null;
 		String executionEngine = jobConf.get(HiveConf.ConfVars.HIVE_EXECUTION_ENGINE.varname, HiveConf.ConfVars.HIVE_EXECUTION_ENGINE.getDefaultValue());
 		
 		if (LOG.isDebugEnabled()) {
@@ -114,24 +141,106 @@ public class PhoenixInputFormat<T extends DBWritable> implements InputFormat<Wri
 			}
 			
 			String whereClause = jobConf.get(TableScanDesc.FILTER_TEXT_CONF_STR);
-			query = PhoenixQueryBuilder.getInstance().buildQuery(jobConf, tableName, ColumnProjectionUtils.getReadColumnNames(jobConf), whereClause, columnTypeMap);
+			ExprNodeGenericFuncDesc filterExpr = PhoenixPredicateTranslator.getFilterExpr(jobConf);
+			PhoenixPushedPredicate pushedPredicate = PhoenixPredicateTranslator.getPushedPredicate(jobConf);
+			
+			if (pushedPredicate != null && pushedPredicate.hasSemiJoinFilter() && LOG.isInfoEnabled()) {
+				LOG.info("<<<<<<<<<< semijoin filter : " + pushedPredicate.getSemiJoinFilter() + " >>>>>>>>>>");
+			}
+			
+			if (pushedPredicate != null || filterExpr != null || whereClause == null) {
+				// where clause decomposed by storage handler or typed translation of filter expression.
+				String phoenixWhereClause = null;
+				List<String> conditionColumnList = null;
+				
+				if (pushedPredicate != null) {
+					phoenixWhereClause = pushedPredicate.getWhereClause();
+					conditionColumnList = Lists.newArrayList(pushedPredicate.getConditionColumnList());
+					bindValues = pushedPredicate.getBindValueList();
+				} else {
+					PhoenixPredicateTranslator translator = new PhoenixPredicateTranslator(jobConf.getBoolean(PhoenixStorageHandlerConstants.BIND_VARIABLES, false));
+					phoenixWhereClause = filterExpr == null ? null : translator.translate(filterExpr);
+					conditionColumnList = Lists.newArrayList(translator.getConditionColumnList());
+					bindValues = translator.getBindValueList();
+				}
+				
+				if (bindValues.isEmpty()) {
+					bindValues = null;
+				}
+				
+				query = PhoenixQueryBuilder.getInstance().buildQuery(jobConf, tableName, ColumnProjectionUtils.getReadColumnNames(jobConf), phoenixWhereClause, conditionColumnList);
+			} else {
+				// filter text only.
+				query = PhoenixQueryBuilder.getInstance().buildQuery(jobConf, tableName, ColumnProjectionUtils.getReadColumnNames(jobConf), whereClause, columnTypeMap);
+			}
 //		} else {
 //			throw new IOException(executionEngine + " execution engine unsupported yet.");
 //		}
 		
-        final QueryPlan queryPlan = getQueryPlan(jobConf, query);
-        final List<KeyRange> allSplits = queryPlan.getSplits();
-        final List<InputSplit> splits = generateSplits(jobConf, queryPlan, allSplits, query);
-        
-        return splits.toArray(new InputSplit[splits.size()]);
+		PhoenixConnectionRegistry connectionRegistry = PhoenixConnectionRegistry.getInstance();
+		HConnection connection = connectionRegistry.getHConnection(jobConf);
+		QueryPlan queryPlan = null;
+		try {
+			PhoenixInputSplitCache splitCache = PhoenixInputSplitCache.getInstance();
+			boolean useSplitCache = jobConf.getBoolean(PhoenixStorageHandlerConstants.SPLIT_CACHE_ENABLED, false);
+			String cacheKey = null;
+			
+			if (useSplitCache) {
+				cacheKey = PhoenixInputSplitCache.getCacheKey(jobConf, bindValues == null ? query : query + bindValues, getTablePaths(jobConf)[0].toString());
+				List<InputSplit> cachedSplits = splitCache.getSplits(jobConf, connection, cacheKey);
+				
+				if (cachedSplits != null) {
+					return toSplitArray(jobConf, cachedSplits);
+				}
+			}
+			
+	        queryPlan = getQueryPlan(jobConf, query, bindValues, true);
+	        final List<KeyRange> allSplits = queryPlan.getSplits();
+	        
+	        String physicalTableName = queryPlan.getTableRef().getTable().getPhysicalName().getString();
+	        String regionFingerprint = useSplitCache ? PhoenixInputSplitCache.getRegionFingerprint(connection, physicalTableName) : null;
+	        
+	        final List<InputSplit> splits = generateSplits(jobConf, connection, queryPlan, allSplits, query);
+	        for (InputSplit split : splits) {
+	        	((PhoenixInputSplit)split).setBindValues(bindValues);
+	        }
+	        
+	        if (useSplitCache) {
+	        	splitCache.putSplits(jobConf, cacheKey, physicalTableName, regionFingerprint, splits);
+	        }
+	        
+	        return toSplitArray(jobConf, splits);
+		} finally {
+			if (queryPlan != null) {
+				connectionRegistry.release(queryPlan.getContext().getConnection());
+			}
+			connectionRegistry.release(connection);
+		}
+	}
+
+	private InputSplit[] toSplitArray(JobConf jobConf, List<InputSplit> splits) {
+		String localityPolicy = jobConf.get(PhoenixStorageHandlerConstants.SPLIT_LOCALITY, PhoenixStorageHandlerConstants.DEFAULT_SPLIT_LOCALITY);
+		boolean localityEnabled = !PhoenixStorageHandlerConstants.SPLIT_LOCALITY_NONE.equalsIgnoreCase(localityPolicy);
+		boolean compressed = jobConf.getBoolean(PhoenixStorageHandlerConstants.SPLIT_COMPRESS, true);
+		
+		for (InputSplit split : splits) {
+			((PhoenixInputSplit)split).setLocalityEnabled(localityEnabled);
+			((PhoenixInputSplit)split).setCompressed(compressed);
+		}
+		
+		return splits.toArray(new InputSplit[splits.size()]);
 	}
 
-	private List<InputSplit> generateSplits(final JobConf jobConf, final QueryPlan qplan, final List<KeyRange> splits, String query) throws IOException {
+	private Path[] getTablePaths(JobConf jobConf) throws IOException {
+		return FileInputFormat.getInputPaths(ShimLoader.getHadoopShims().newJobContext(new Job(jobConf)));
+	}
+	
+	private List<InputSplit> generateSplits(final JobConf jobConf, final HConnection connection, final QueryPlan qplan, final List<KeyRange> splits, String query) throws IOException {
         Preconditions.checkNotNull(qplan);
         Preconditions.checkNotNull(splits);
         final List<InputSplit> psplits = Lists.newArrayListWithExpectedSize(splits.size());
         
-        Path[] tablePaths = FileInputFormat.getInputPaths(ShimLoader.getHadoopShims().newJobContext(new Job(jobConf)));
+        Path[] tablePaths = getTablePaths(jobConf);
         boolean splitByStats = jobConf.getBoolean(PhoenixStorageHandlerConstants.SPLIT_BY_STATS, false);
         int scanCacheSize = jobConf.getInt(PhoenixStorageHandlerConstants.HBASE_SCAN_CACHE, -1);
         
@@ -140,17 +249,34 @@ public class PhoenixInputFormat<T extends DBWritable> implements InputFormat<Wri
 		}
         
         // Adding Localization
-        HConnection connection = HConnectionManager.createConnection(jobConf);
         RegionLocator regionLocator = connection.getRegionLocator(TableName.valueOf(qplan.getTableRef().getTable().getPhysicalName().toString()));
         RegionSizeCalculator sizeCalculator = new RegionSizeCalculator(regionLocator, connection.getAdmin());
-        
-        for (List<Scan> scans : qplan.getScans()) {
-        	PhoenixInputSplit inputSplit = null;
-        	
-        	HRegionLocation location = regionLocator.getRegionLocation(scans.get(0).getStartRow(), false);
-			long regionSize = sizeCalculator.getRegionSize(location.getRegionInfo().getRegionName());
-			String regionLocation = PhoenixStorageHandlerUtil.getRegionLocation(location, LOG);
+
+        List<List<Scan>> scansList = qplan.getScans();
+        List<RegionLookupResult> lookupResultList = lookupRegions(jobConf, regionLocator, sizeCalculator, scansList);
+
+        Integer bucketNum = qplan.getTableRef().getTable().getBucketNum();
+        String bucketingConfigName = jobConf.get(PhoenixConfigurationUtil.INPUT_TABLE_NAME).toLowerCase() + PhoenixStorageHandlerConstants.BUCKETING;
+        if (jobConf.getBoolean(bucketingConfigName, false) && bucketNum != null) {
+        	return generateBucketSplits(scansList, lookupResultList, tablePaths[0], query, bucketNum, scanCacheSize);
+        }
+
+        long splitTargetBytes = jobConf.getLong(PhoenixStorageHandlerConstants.SPLIT_TARGET_BYTES, -1);
+        if (splitTargetBytes > 0) {
+        	if (hasRegionSize(lookupResultList)) {
+        		return generateSizeTargetedSplits(scansList, lookupResultList, tablePaths[0], query, splitTargetBytes, scanCacheSize);
+        	}
         	
+        	LOG.warn("Region sizes are not available. " + PhoenixStorageHandlerConstants.SPLIT_TARGET_BYTES + " is ignored.");
+        }
+
+        for (int scansIndex = 0, scansCount = scansList.size(); scansIndex < scansCount; scansIndex++) {
+        	List<Scan> scans = scansList.get(scansIndex);
+        	PhoenixInputSplit inputSplit = null;
+
+			long regionSize = lookupResultList.get(scansIndex).regionSize;
+			String regionLocation = lookupResultList.get(scansIndex).regionLocation;
+
         	if (splitByStats) {
         		for (Scan aScan : scans) {
         			if (scanCacheSize > 0) {
@@ -192,51 +318,297 @@ public class PhoenixInputFormat<T extends DBWritable> implements InputFormat<Wri
         		psplits.add(inputSplit);
         	}
         }
-        
+
         return psplits;
     }
-	
+
+	private boolean hasRegionSize(List<RegionLookupResult> lookupResultList) {
+		for (RegionLookupResult lookupResult : lookupResultList) {
+			if (lookupResult.regionSize > 0) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+
+	/**
+	 * Scans are packed into splits of about splitTargetBytes.
+	 * Size of each scan is estimated as region size divided by the number of scans(guideposts) in the region.
+	 * Adjacent scans located in the same region server are merged until the target is reached and
+	 * large region is cut at guidepost boundary. A scan is never cut, so guidepost width is the lower bound of split size.
+	 */
+	private List<InputSplit> generateSizeTargetedSplits(List<List<Scan>> scansList, List<RegionLookupResult> lookupResultList, Path tablePath, String query, long splitTargetBytes, int scanCacheSize) {
+		List<InputSplit> psplits = Lists.newArrayList();
+		
+		List<Scan> splitScans = Lists.newArrayList();
+		String splitLocation = null;
+		long splitBytes = 0;
+		
+		for (int scansIndex = 0, scansCount = scansList.size(); scansIndex < scansCount; scansIndex++) {
+			List<Scan> scans = scansList.get(scansIndex);
+			String regionLocation = lookupResultList.get(scansIndex).regionLocation;
+			long scanBytes = lookupResultList.get(scansIndex).regionSize / scans.size();
+			
+			for (Scan aScan : scans) {
+				if (scanCacheSize > 0) {
+					aScan.setCaching(scanCacheSize);
+				}
+				
+				if (!splitScans.isEmpty() && (!regionLocation.equals(splitLocation) || splitBytes + scanBytes > splitTargetBytes)) {
+					psplits.add(newInputSplit(splitScans, tablePath, splitLocation, splitBytes, query));
+					
+					splitScans = Lists.newArrayList();
+					splitBytes = 0;
+				}
+				
+				splitScans.add(aScan);
+				splitLocation = regionLocation;
+				splitBytes += scanBytes;
+			}
+		}
+		
+		if (!splitScans.isEmpty()) {
+			psplits.add(newInputSplit(splitScans, tablePath, splitLocation, splitBytes, query));
+		}
+		
+		if (LOG.isInfoEnabled()) {
+			LOG.info("<<<<<<<<<< " + scansList.size() + " scan groups packed into " + psplits.size() + " splits of target bytes " + splitTargetBytes + " >>>>>>>>>>");
+		}
+		
+		return psplits;
+	}
+
+	/**
+	 * One split per salt bucket. Scans of a bucket are kept in row key order, so a split reads a bucket in sorted order.
+	 * Location of a split is the location of the first region of the bucket.
+	 */
+	private List<InputSplit> generateBucketSplits(List<List<Scan>> scansList, List<RegionLookupResult> lookupResultList, Path tablePath, String query, int bucketNum, int scanCacheSize) {
+		List<List<Scan>> bucketScansList = Lists.newArrayListWithExpectedSize(bucketNum);
+		String[] bucketLocations = new String[bucketNum];
+		long[] bucketBytes = new long[bucketNum];
+		
+		for (int i = 0; i < bucketNum; i++) {
+			bucketScansList.add(Lists.<Scan>newArrayList());
+		}
+		
+		for (int scansIndex = 0, scansCount = scansList.size(); scansIndex < scansCount; scansIndex++) {
+			List<Scan> scans = scansList.get(scansIndex);
+			RegionLookupResult lookupResult = lookupResultList.get(scansIndex);
+			long scanBytes = lookupResult.regionSize / scans.size();
+			
+			for (Scan aScan : scans) {
+				if (scanCacheSize > 0) {
+					aScan.setCaching(scanCacheSize);
+				}
+				
+				// first byte of row key is salt byte.
+				byte[] startRow = aScan.getStartRow();
+				int bucket = startRow.length == 0 ? 0 : Math.min(startRow[0] & 0xFF, bucketNum - 1);
+				
+				bucketScansList.get(bucket).add(aScan);
+				bucketBytes[bucket] += scanBytes;
+				if (bucketLocations[bucket] == null) {
+					bucketLocations[bucket] = lookupResult.regionLocation;
+				}
+			}
+		}
+		
+		List<InputSplit> psplits = Lists.newArrayListWithExpectedSize(bucketNum);
+		for (int i = 0; i < bucketNum; i++) {
+			if (!bucketScansList.get(i).isEmpty()) {
+				psplits.add(newInputSplit(bucketScansList.get(i), tablePath, bucketLocations[i], bucketBytes[i], query));
+			}
+		}
+		
+		if (LOG.isInfoEnabled()) {
+			LOG.info("<<<<<<<<<< " + scansList.size() + " scan groups aligned into " + psplits.size() + " splits of " + bucketNum + " salt buckets >>>>>>>>>>");
+		}
+		
+		return psplits;
+	}
+
+	private PhoenixInputSplit newInputSplit(List<Scan> scans, Path tablePath, String regionLocation, long length, String query) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<<<<<<<<<< scan count[" + scans.size() + "] : " + Bytes.toStringBinary(scans.get(0).getStartRow()) + " ~ " +  Bytes.toStringBinary(scans.get(scans.size() - 1).getStopRow()) + ", bytes : " + length + ", regionLocation : " + regionLocation + " >>>>>>>>>>");
+		}
+		
+		PhoenixInputSplit inputSplit = new PhoenixInputSplit(scans, tablePath, regionLocation, length);
+		inputSplit.setQuery(query);
+		
+		return inputSplit;
+	}
+
+	/**
+	 * Region location, region size and host name of each scan group are looked up in parallel.
+	 * Results are collected in the order of scan group so that split order is not changed.
+	 */
+	private List<RegionLookupResult> lookupRegions(JobConf jobConf, final RegionLocator regionLocator, final RegionSizeCalculator sizeCalculator, List<List<Scan>> scansList) throws IOException {
+		int threadCount = Math.max(1, Math.min(jobConf.getInt(PhoenixStorageHandlerConstants.SPLIT_LOOKUP_THREADS, PhoenixStorageHandlerConstants.DEFAULT_SPLIT_LOOKUP_THREADS), scansList.size()));
+		long lookupTimeout = jobConf.getLong(PhoenixStorageHandlerConstants.SPLIT_LOOKUP_TIMEOUT, PhoenixStorageHandlerConstants.DEFAULT_SPLIT_LOOKUP_TIMEOUT);
+
+		List<RegionLookupResult> lookupResultList = Lists.newArrayListWithExpectedSize(scansList.size());
+		long startTime = System.currentTimeMillis();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactoryBuilder().setNameFormat("phoenix-split-lookup-%d").setDaemon(true).build());
+		try {
+			List<Future<RegionLookupResult>> futureList = Lists.newArrayListWithExpectedSize(scansList.size());
+
+			for (final List<Scan> scans : scansList) {
+				futureList.add(executor.submit(new Callable<RegionLookupResult>() {
+					@Override
+					public RegionLookupResult call() throws Exception {
+						HRegionLocation location = regionLocator.getRegionLocation(scans.get(0).getStartRow(), false);
+						long regionSize = sizeCalculator.getRegionSize(location.getRegionInfo().getRegionName());
+						String regionLocation = PhoenixStorageHandlerUtil.getRegionLocation(location, LOG);
+
+						return new RegionLookupResult(regionLocation, regionSize);
+					}
+				}));
+			}
+
+			for (int i = 0, limit = futureList.size(); i < limit; i++) {
+				try {
+					lookupResultList.add(futureList.get(i).get(lookupTimeout, TimeUnit.MILLISECONDS));
+				} catch (TimeoutException e) {
+					throw new IOException("region lookup timed out after " + lookupTimeout + "ms : " + Bytes.toStringBinary(scansList.get(i).get(0).getStartRow()), e);
+				} catch (ExecutionException e) {
+					Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+					throw new IOException(e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (LOG.isInfoEnabled()) {
+			LOG.info("<<<<<<<<<< region lookup of " + scansList.size() + " scan groups took " + (System.currentTimeMillis() - startTime) + "ms with " + threadCount + " threads >>>>>>>>>>");
+		}
+
+		return lookupResultList;
+	}
+
+	private static class RegionLookupResult {
+		private final String regionLocation;
+		private final long regionSize;
+
+		public RegionLookupResult(String regionLocation, long regionSize) {
+			this.regionLocation = regionLocation;
+			this.regionSize = regionSize;
+		}
+	}
+
 	@Override
 	public RecordReader<WritableComparable, T> getRecordReader(InputSplit split, JobConf job, Reporter reporter) throws IOException {
-        final QueryPlan queryPlan = getQueryPlan(job, ((PhoenixInputSplit)split).getQuery());
+        // Scans of split are already made at split phase. Building parallel scans of the whole table again is skipped in lightweight mode.
+        boolean lightweightPlan = job.getBoolean(PhoenixStorageHandlerConstants.TASK_PLAN_LIGHTWEIGHT, false);
+        final QueryPlan queryPlan = getQueryPlan(job, ((PhoenixInputSplit)split).getQuery(), ((PhoenixInputSplit)split).getBindValues(), !lightweightPlan);
         @SuppressWarnings("unchecked")
         final Class<T> inputClass = (Class<T>) job.getClass(PhoenixConfigurationUtil.INPUT_CLASS, PhoenixResultWritable.class);
         
         PhoenixRecordReader<T> recordReader = new PhoenixRecordReader<T>(inputClass, job, queryPlan);
         recordReader.initialize(split);
         
+        countLocality(job, (PhoenixInputSplit)split, reporter);
+        
         return recordReader;
 	}
 
+	/**
+	 * Counts whether the task is placed on the region server of split, in the same rack or remote.
+	 * Rack is resolved by net.topology.node.switch.mapping.impl. If topology is not configured, every host is in default rack and the task is counted as remote.
+	 */
+	private void countLocality(JobConf job, PhoenixInputSplit split, Reporter reporter) {
+		if (reporter == null || split.getRegionLocation() == null) {
+			return;
+		}
+		
+		LocalityCounter locality = LocalityCounter.REMOTE;
+		try {
+			InetAddress localAddress = InetAddress.getLocalHost();
+			String regionLocation = split.getRegionLocation();
+			
+			if (regionLocation.equalsIgnoreCase(localAddress.getCanonicalHostName()) || regionLocation.equalsIgnoreCase(localAddress.getHostName())) {
+				locality = LocalityCounter.DATA_LOCAL;
+			} else {
+				List<String> racks = getSwitchMapping(job).resolve(Lists.newArrayList(localAddress.getCanonicalHostName(), regionLocation));
+				
+				if (racks != null && racks.size() == 2 && racks.get(0) != null && racks.get(0).equals(racks.get(1)) && !NetworkTopology.DEFAULT_RACK.equals(racks.get(0))) {
+					locality = LocalityCounter.RACK_LOCAL;
+				}
+			}
+			
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("<<<<<<<<<< task host : " + localAddress.getCanonicalHostName() + ", region location : " + regionLocation + ", locality : " + locality + " >>>>>>>>>>");
+			}
+		} catch (IOException e) {
+			LOG.warn("Failed to resolve locality of split : " + e.getMessage());
+		}
+		
+		reporter.incrCounter(locality, 1);
+	}
+
+	private static synchronized DNSToSwitchMapping getSwitchMapping(Configuration config) {
+		if (switchMapping == null) {
+			Class<? extends DNSToSwitchMapping> switchMappingClass = config.getClass(CommonConfigurationKeysPublic.NET_TOPOLOGY_NODE_SWITCH_MAPPING_IMPL_KEY, ScriptBasedMapping.class, DNSToSwitchMapping.class);
+			DNSToSwitchMapping mapping = ReflectionUtils.newInstance(switchMappingClass, config);
+			
+			switchMapping = mapping instanceof CachedDNSToSwitchMapping ? mapping : new CachedDNSToSwitchMapping(mapping);
+		}
+		
+		return switchMapping;
+	}
+
     /**
      * Returns the query plan associated with the select query.
-     * @param context
-     * @return
-     * @throws IOException
-     * @throws SQLException
+     * Query with bind variables is prepared through connection registry, so the statement parsed once is reused on the pooled connection
+     * for the splits and the queries differing only in bind values. The plan is compiled for each call since bind values change the scans.
      */
-    private QueryPlan getQueryPlan(final Configuration configuration, String selectStatement) throws IOException {
+    private QueryPlan getQueryPlan(final Configuration configuration, String selectStatement, List<Object> bindValues, boolean initializeScans) throws IOException {
         try {
             final String currentScnValue = configuration.get(PhoenixConfigurationUtil.CURRENT_SCN_VALUE);
             final Properties overridingProps = new Properties();
             if(currentScnValue != null) {
                 overridingProps.put(PhoenixRuntime.CURRENT_SCN_ATTRIB, currentScnValue);
             }
-            final Connection connection = PhoenixConnectionUtil.getInputConnection(configuration, overridingProps);
-//            final String selectStatement = PhoenixConfigurationUtil.getSelectStatement(configuration);
-            Preconditions.checkNotNull(selectStatement);
-            final Statement statement = connection.createStatement();
-            final PhoenixStatement pstmt = statement.unwrap(PhoenixStatement.class);
-            
-            if (LOG.isDebugEnabled()) {
-            	LOG.debug("compiled query : " + selectStatement);
+            // Connection is given back to registry when the plan is no longer used.
+            final Connection connection = PhoenixConnectionRegistry.getInstance().getConnection(configuration, overridingProps);
+            try {
+//	            final String selectStatement = PhoenixConfigurationUtil.getSelectStatement(configuration);
+	            Preconditions.checkNotNull(selectStatement);
+	            
+	            if (LOG.isDebugEnabled()) {
+	            	LOG.debug("compiled query : " + selectStatement + (bindValues == null ? "" : ", bind values : " + bindValues));
+	            }
+	            
+	            // Optimize the query plan so that we potentially use secondary indexes            
+	            final QueryPlan queryPlan;
+	            if (bindValues == null) {
+	            	final Statement statement = connection.createStatement();
+	            	final PhoenixStatement pstmt = statement.unwrap(PhoenixStatement.class);
+	            	queryPlan = pstmt.optimizeQuery(selectStatement);
+	            } else {
+	            	final PhoenixPreparedStatement pstmt = PhoenixConnectionRegistry.getInstance().prepareStatement(connection, selectStatement);
+	            	for (int i = 0, limit = bindValues.size(); i < limit; i++) {
+	            		pstmt.setObject(i + 1, bindValues.get(i));
+	            	}
+	            	queryPlan = pstmt.optimizeQuery();
+	            }
+	            // Initialize the query plan so it sets up the parallel scans
+	            // Plan other than simple scan(e.g. hash join) is always initialized because it prepares server side state.
+	            if (initializeScans || !(queryPlan instanceof ScanPlan)) {
+	            	queryPlan.iterator(MapReduceParallelScanGrouper.getInstance());
+	            } else if (LOG.isDebugEnabled()) {
+	            	LOG.debug("<<<<<<<<<< parallel scans are not built in lightweight mode >>>>>>>>>>");
+	            }
+	            return queryPlan;
+            } catch (Exception e) {
+            	PhoenixConnectionRegistry.getInstance().release(connection);
+            	throw e;
             }
-            
-            // Optimize the query plan so that we potentially use secondary indexes            
-            final QueryPlan queryPlan = pstmt.optimizeQuery(selectStatement);
-            // Initialize the query plan so it sets up the parallel scans
-            queryPlan.iterator(MapReduceParallelScanGrouper.getInstance());
-            return queryPlan;
         } catch (Exception exception) {
             LOG.error(String.format("Failed to get the query plan with error [%s]", exception.getMessage()));
             throw new RuntimeException(exception);
@@ -17,15 +17,28 @@
  */
 package org.apache.phoenix.hive.mapreduce;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
 import org.apache.hadoop.hbase.protobuf.generated.ClientProtos;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.InputSplit;
@@ -33,6 +46,7 @@ import org.apache.phoenix.query.KeyRange;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * @author JeongMin Ju
@@ -40,13 +54,22 @@ import com.google.common.collect.Lists;
  */
 public class PhoenixInputSplit extends FileSplit implements InputSplit {
 
+	private static final int CURRENT_VERSION = 2;
+	private static final byte SCAN_FULL = 0;
+	private static final byte SCAN_DIFF = 1;
+
 	private List<Scan> scans;
 	private KeyRange keyRange;
 
 	private long regionSize;
+	private String regionLocation;
+	private boolean localityEnabled = true;
+	private boolean compressed = true;
 	
 	// 2015-11-27 Added by JeongMin Ju : I will pass query put in split because it is not delivered in jobConf. 
 	private String query;
+	// Values of bind variables in query. null if query has no bind variable.
+	private ArrayList<Object> bindValues;
 	
 	public PhoenixInputSplit() {
 	}
@@ -55,6 +78,7 @@ public class PhoenixInputSplit extends FileSplit implements InputSplit {
 		super(dummyPath, 0, 0, new String[] {regionLocation});
 		
 		regionSize = length;
+		this.regionLocation = regionLocation;
 		
 		Preconditions.checkNotNull(scans);
 		Preconditions.checkState(!scans.isEmpty());
@@ -70,6 +94,18 @@ public class PhoenixInputSplit extends FileSplit implements InputSplit {
 		return keyRange;
 	}
 
+	public String getRegionLocation() {
+		return regionLocation;
+	}
+
+	public void setLocalityEnabled(boolean localityEnabled) {
+		this.localityEnabled = localityEnabled;
+	}
+
+	public void setCompressed(boolean compressed) {
+		this.compressed = compressed;
+	}
+
 	public String getQuery() {
 		return query;
 	}
@@ -78,6 +114,14 @@ public class PhoenixInputSplit extends FileSplit implements InputSplit {
 		this.query = query;
 	}
 
+	public List<Object> getBindValues() {
+		return bindValues;
+	}
+
+	public void setBindValues(List<Object> bindValues) {
+		this.bindValues = bindValues == null ? null : new ArrayList<>(bindValues);
+	}
+
 	private void init() {
 		this.keyRange = KeyRange.getKeyRange(scans.get(0).getStartRow(), scans.get(scans.size() - 1).getStopRow());
 	}
@@ -87,16 +131,58 @@ public class PhoenixInputSplit extends FileSplit implements InputSplit {
 		super.write(out);
 		
 		Preconditions.checkNotNull(scans);
+		// Negative number is written where scan count was written in legacy format.
+		WritableUtils.writeVInt(out, -CURRENT_VERSION);
+		out.writeBoolean(compressed);
+		
+		if (compressed) {
+			ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+			DataOutputStream compressedOut = new DataOutputStream(new DeflaterOutputStream(bytesOut));
+			writeBody(compressedOut);
+			compressedOut.close();
+			
+			byte[] compressedBytes = bytesOut.toByteArray();
+			WritableUtils.writeVInt(out, compressedBytes.length);
+			out.write(compressedBytes);
+		} else {
+			writeBody(out);
+		}
+	}
+
+	/**
+	 * Scans of a split are copies of one scan which differ in start row, stop row and some attributes.
+	 * First scan is written fully and others are written as difference from the first if the difference restores the same scan.
+	 */
+	private void writeBody(DataOutput out) throws IOException {
 		WritableUtils.writeVInt(out, scans.size());
-		for (Scan scan : scans) {
-			ClientProtos.Scan protoScan = ProtobufUtil.toScan(scan);
-			byte[] protoScanBytes = protoScan.toByteArray();
-			WritableUtils.writeVInt(out, protoScanBytes.length);
-			out.write(protoScanBytes);
+		
+		Scan firstScan = scans.get(0);
+		writeScan(out, firstScan);
+		
+		for (int i = 1, limit = scans.size(); i < limit; i++) {
+			Scan scan = scans.get(i);
+			Map<String, byte[]> attributeDiff = getAttributeDiff(firstScan, scan);
+			
+			if (Arrays.equals(toScanBytes(scan), toScanBytes(applyDiff(firstScan, scan.getStartRow(), scan.getStopRow(), attributeDiff)))) {
+				out.writeByte(SCAN_DIFF);
+				Bytes.writeByteArray(out, scan.getStartRow());
+				Bytes.writeByteArray(out, scan.getStopRow());
+				
+				WritableUtils.writeVInt(out, attributeDiff.size());
+				for (Entry<String, byte[]> entry : attributeDiff.entrySet()) {
+					WritableUtils.writeString(out, entry.getKey());
+					writeNullableBytes(out, entry.getValue());
+				}
+			} else {
+				out.writeByte(SCAN_FULL);
+				writeScan(out, scan);
+			}
 		}
 		
 		WritableUtils.writeString(out, query);
 		WritableUtils.writeVLong(out, regionSize);
+		WritableUtils.writeString(out, regionLocation);
+		writeNullableBytes(out, toBindValueBytes(bindValues));
 	}
 
 	@Override
@@ -104,13 +190,71 @@ public class PhoenixInputSplit extends FileSplit implements InputSplit {
 		super.readFields(in);
 		
 		int count = WritableUtils.readVInt(in);
+		if (count >= 0) {
+			readLegacyFields(in, count);
+			return;
+		}
+		
+		int version = -count;
+		if (version > CURRENT_VERSION) {
+			throw new IOException("Unsupported split version : " + version);
+		}
+		
+		compressed = in.readBoolean();
+		if (compressed) {
+			byte[] compressedBytes = new byte[WritableUtils.readVInt(in)];
+			in.readFully(compressedBytes);
+			
+			DataInputStream compressedIn = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressedBytes)));
+			try {
+				readBody(compressedIn, version);
+			} finally {
+				compressedIn.close();
+			}
+		} else {
+			readBody(in, version);
+		}
+	}
+
+	private void readBody(DataInput in, int version) throws IOException {
+		int count = WritableUtils.readVInt(in);
+		scans = Lists.newArrayListWithExpectedSize(count);
+		
+		Scan firstScan = readScan(in);
+		scans.add(firstScan);
+		
+		for (int i = 1; i < count; i++) {
+			if (in.readByte() == SCAN_DIFF) {
+				byte[] startRow = Bytes.readByteArray(in);
+				byte[] stopRow = Bytes.readByteArray(in);
+				
+				int attributeCount = WritableUtils.readVInt(in);
+				Map<String, byte[]> attributeDiff = Maps.newHashMapWithExpectedSize(attributeCount);
+				for (int j = 0; j < attributeCount; j++) {
+					attributeDiff.put(WritableUtils.readString(in), readNullableBytes(in));
+				}
+				
+				scans.add(applyDiff(firstScan, startRow, stopRow, attributeDiff));
+			} else {
+				scans.add(readScan(in));
+			}
+		}
+		init();
+		
+		query = WritableUtils.readString(in);
+		regionSize = WritableUtils.readVLong(in);
+		regionLocation = WritableUtils.readString(in);
+		
+		if (version >= 2) {
+			bindValues = fromBindValueBytes(readNullableBytes(in));
+		}
+	}
+
+	// Format written before split version is introduced.
+	private void readLegacyFields(DataInput in, int count) throws IOException {
 		scans = Lists.newArrayListWithExpectedSize(count);
 		for (int i = 0; i < count; i++) {
-			byte[] protoScanBytes = new byte[WritableUtils.readVInt(in)];
-			in.readFully(protoScanBytes);
-			ClientProtos.Scan protoScan = ClientProtos.Scan.parseFrom(protoScanBytes);
-			Scan scan = ProtobufUtil.toScan(protoScan);
-			scans.add(scan);
+			scans.add(readScan(in));
 		}
 		init();
 		
@@ -118,6 +262,105 @@ public class PhoenixInputSplit extends FileSplit implements InputSplit {
 		regionSize = WritableUtils.readVLong(in);
 	}
 
+	private void writeScan(DataOutput out, Scan scan) throws IOException {
+		byte[] protoScanBytes = toScanBytes(scan);
+		WritableUtils.writeVInt(out, protoScanBytes.length);
+		out.write(protoScanBytes);
+	}
+
+	private Scan readScan(DataInput in) throws IOException {
+		byte[] protoScanBytes = new byte[WritableUtils.readVInt(in)];
+		in.readFully(protoScanBytes);
+		ClientProtos.Scan protoScan = ClientProtos.Scan.parseFrom(protoScanBytes);
+		
+		return ProtobufUtil.toScan(protoScan);
+	}
+
+	private void writeNullableBytes(DataOutput out, byte[] bytes) throws IOException {
+		if (bytes == null) {
+			WritableUtils.writeVInt(out, -1);
+		} else {
+			WritableUtils.writeVInt(out, bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private byte[] readNullableBytes(DataInput in) throws IOException {
+		int length = WritableUtils.readVInt(in);
+		if (length < 0) {
+			return null;
+		}
+		
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		
+		return bytes;
+	}
+
+	// Bind values are literals of java types supported by PreparedStatement.setObject, so java serialization is used.
+	private byte[] toBindValueBytes(ArrayList<Object> values) throws IOException {
+		if (values == null) {
+			return null;
+		}
+		
+		ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+		try (ObjectOutputStream objectOut = new ObjectOutputStream(bytesOut)) {
+			objectOut.writeObject(values);
+		}
+		
+		return bytesOut.toByteArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	private ArrayList<Object> fromBindValueBytes(byte[] bytes) throws IOException {
+		if (bytes == null) {
+			return null;
+		}
+		
+		try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return (ArrayList<Object>)objectIn.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private byte[] toScanBytes(Scan scan) throws IOException {
+		return ProtobufUtil.toScan(scan).toByteArray();
+	}
+
+	// Attributes added or changed in scan. Removed attribute has null value.
+	private Map<String, byte[]> getAttributeDiff(Scan baseScan, Scan scan) {
+		Map<String, byte[]> attributeDiff = Maps.newHashMap();
+		Map<String, byte[]> baseAttributes = baseScan.getAttributesMap();
+		Map<String, byte[]> attributes = scan.getAttributesMap();
+		
+		for (Entry<String, byte[]> entry : attributes.entrySet()) {
+			if (!Arrays.equals(entry.getValue(), baseAttributes.get(entry.getKey()))) {
+				attributeDiff.put(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		for (String name : baseAttributes.keySet()) {
+			if (!attributes.containsKey(name)) {
+				attributeDiff.put(name, null);
+			}
+		}
+		
+		return attributeDiff;
+	}
+
+	private Scan applyDiff(Scan baseScan, byte[] startRow, byte[] stopRow, Map<String, byte[]> attributeDiff) throws IOException {
+		Scan scan = new Scan(baseScan);
+		scan.setStartRow(startRow);
+		scan.setStopRow(stopRow);
+		
+		for (Entry<String, byte[]> entry : attributeDiff.entrySet()) {
+			scan.setAttribute(entry.getKey(), entry.getValue());
+		}
+		
+		return scan;
+	}
+
 	@Override
 	public long getLength() {
 		return regionSize;
@@ -125,7 +368,11 @@ public class PhoenixInputSplit extends FileSplit implements InputSplit {
 
 	@Override
 	public String[] getLocations() throws IOException {
-		return new String[] {};
+		if (!localityEnabled || regionLocation == null) {
+			return new String[] {};
+		}
+		
+		return new String[] {regionLocation};
 	}
 
 	@Override
@@ -0,0 +1,231 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.mapreduce;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
+import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
+
+import com.google.common.collect.Lists;
+
+/**
+ * In-process cache of generated input splits.
+ *
+ * Entry is keyed by generated phoenix query and the configuration affecting split generation.
+ * Physical table name and region topology fingerprint are kept in the entry and checked on every lookup.
+ * Entry is invalidated if ttl is expired or regions of physical table are split, merged or moved.
+ */
+public class PhoenixInputSplitCache {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixInputSplitCache.class);
+
+	private static final PhoenixInputSplitCache SPLIT_CACHE = new PhoenixInputSplitCache();
+
+	// Configuration which changes the result of split generation.
+	private static final String[] SPLIT_CONFIG_NAMES = new String[] {
+		PhoenixStorageHandlerConstants.ZOOKEEPER_QUORUM,
+		PhoenixStorageHandlerConstants.ZOOKEEPER_PORT,
+		PhoenixStorageHandlerConstants.ZOOKEEPER_PARENT,
+		PhoenixConfigurationUtil.CURRENT_SCN_VALUE,
+		PhoenixStorageHandlerConstants.SPLIT_BY_STATS,
+		PhoenixStorageHandlerConstants.HBASE_SCAN_CACHE,
+		PhoenixStorageHandlerConstants.SPLIT_TARGET_BYTES
+	};
+
+	private final Map<String, SplitCacheEntry> splitCacheMap = new LinkedHashMap<String, SplitCacheEntry>(16, 0.75f, true);
+
+	private long hitCount;
+	private long missCount;
+	private long invalidateCount;
+
+	private PhoenixInputSplitCache() {
+	}
+
+	public static PhoenixInputSplitCache getInstance() {
+		return SPLIT_CACHE;
+	}
+
+	public static String getCacheKey(Configuration config, String query, String tablePath) {
+		StringBuilder cacheKey = new StringBuilder(query).append(PhoenixStorageHandlerConstants.SPACE).append(tablePath);
+
+		for (String configName : SPLIT_CONFIG_NAMES) {
+			cacheKey.append(PhoenixStorageHandlerConstants.COMMA).append(config.get(configName));
+		}
+
+		// splits are aligned to salt buckets.
+		cacheKey.append(PhoenixStorageHandlerConstants.COMMA).append(config.get(config.get(PhoenixConfigurationUtil.INPUT_TABLE_NAME).toLowerCase() + PhoenixStorageHandlerConstants.BUCKETING));
+
+		return cacheKey.toString();
+	}
+
+	/**
+	 * Fingerprint of region topology. It is changed when region is split, merged or moved to another region server.
+	 */
+	public static String getRegionFingerprint(HConnection connection, String physicalTableName) throws IOException {
+		StringBuilder regionInfo = new StringBuilder();
+
+		try (RegionLocator regionLocator = connection.getRegionLocator(TableName.valueOf(physicalTableName))) {
+			for (HRegionLocation location : regionLocator.getAllRegionLocations()) {
+				regionInfo.append(location.getRegionInfo().getRegionNameAsString()).append("@").append(location.getServerName()).append(PhoenixStorageHandlerConstants.COMMA);
+			}
+		}
+
+		return MD5Hash.digest(regionInfo.toString()).toString();
+	}
+
+	/**
+	 * Return copy of cached splits or null if not exist or invalidated.
+	 */
+	public List<InputSplit> getSplits(Configuration config, HConnection connection, String cacheKey) throws IOException {
+		SplitCacheEntry cacheEntry = null;
+
+		synchronized (splitCacheMap) {
+			cacheEntry = splitCacheMap.get(cacheKey);
+			
+			if (cacheEntry == null) {
+				missCount++;
+				return null;
+			}
+		}
+
+		long ttl = config.getLong(PhoenixStorageHandlerConstants.SPLIT_CACHE_TTL, PhoenixStorageHandlerConstants.DEFAULT_SPLIT_CACHE_TTL);
+		if (System.currentTimeMillis() - cacheEntry.createdTime > ttl) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("<<<<<<<<<< cached splits expired : " + cacheEntry.physicalTableName + " >>>>>>>>>>");
+			}
+
+			invalidate(cacheKey);
+			return null;
+		}
+
+		String fingerprint = getRegionFingerprint(connection, cacheEntry.physicalTableName);
+		if (!fingerprint.equals(cacheEntry.regionFingerprint)) {
+			if (LOG.isInfoEnabled()) {
+				LOG.info("<<<<<<<<<< region topology of " + cacheEntry.physicalTableName + " changed. cached splits invalidated. >>>>>>>>>>");
+			}
+
+			invalidate(cacheKey);
+			return null;
+		}
+
+		synchronized (splitCacheMap) {
+			hitCount++;
+			
+			if (LOG.isInfoEnabled()) {
+				LOG.info("<<<<<<<<<< cached splits used : " + cacheEntry.physicalTableName + ", split count : " + cacheEntry.splitList.size() + ", [hit, miss, invalidate] : [" + hitCount + ", " + missCount + ", " + invalidateCount + "] >>>>>>>>>>");
+			}
+		}
+
+		return copySplits(cacheEntry.splitList, config.get(PhoenixConfigurationUtil.CURRENT_SCN_VALUE) == null);
+	}
+
+	/**
+	 * Region fingerprint must be taken before split generation. Otherwise region change during split generation is not detected.
+	 */
+	public void putSplits(Configuration config, String cacheKey, String physicalTableName, String regionFingerprint, List<InputSplit> splitList) throws IOException {
+		SplitCacheEntry cacheEntry = new SplitCacheEntry(physicalTableName, regionFingerprint, copySplits(splitList, false));
+		int maxEntries = config.getInt(PhoenixStorageHandlerConstants.SPLIT_CACHE_MAX_ENTRIES, PhoenixStorageHandlerConstants.DEFAULT_SPLIT_CACHE_MAX_ENTRIES);
+
+		synchronized (splitCacheMap) {
+			splitCacheMap.put(cacheKey, cacheEntry);
+
+			// remove least recently used entry.
+			for (Iterator<Entry<String, SplitCacheEntry>> iterator = splitCacheMap.entrySet().iterator(); splitCacheMap.size() > maxEntries && iterator.hasNext(); ) {
+				iterator.next();
+				iterator.remove();
+			}
+		}
+	}
+
+	public void invalidate(String cacheKey) {
+		synchronized (splitCacheMap) {
+			if (splitCacheMap.remove(cacheKey) != null) {
+				invalidateCount++;
+			}
+		}
+	}
+
+	public void clear() {
+		synchronized (splitCacheMap) {
+			splitCacheMap.clear();
+		}
+	}
+
+	/**
+	 * Splits are copied because scans are mutable.
+	 * If currentSCN is not given, upper bound of time range is moved to current time because phoenix set it at compile time.
+	 */
+	private List<InputSplit> copySplits(List<InputSplit> splitList, boolean refreshTimeRange) throws IOException {
+		List<InputSplit> copiedSplitList = Lists.newArrayListWithExpectedSize(splitList.size());
+		long currentTime = System.currentTimeMillis();
+
+		for (InputSplit split : splitList) {
+			PhoenixInputSplit pSplit = (PhoenixInputSplit)split;
+			List<Scan> copiedScans = Lists.newArrayListWithExpectedSize(pSplit.getScans().size());
+
+			for (Scan scan : pSplit.getScans()) {
+				Scan copiedScan = new Scan(scan);
+
+				if (refreshTimeRange) {
+					TimeRange timeRange = copiedScan.getTimeRange();
+					copiedScan.setTimeRange(timeRange.getMin(), Math.max(timeRange.getMax(), currentTime));
+				}
+
+				copiedScans.add(copiedScan);
+			}
+
+			PhoenixInputSplit copiedSplit = new PhoenixInputSplit(copiedScans, pSplit.getPath(), pSplit.getRegionLocation(), pSplit.getLength());
+			copiedSplit.setQuery(pSplit.getQuery());
+			copiedSplit.setBindValues(pSplit.getBindValues());
+			copiedSplitList.add(copiedSplit);
+		}
+
+		return copiedSplitList;
+	}
+
+	private static class SplitCacheEntry {
+		private final String physicalTableName;
+		private final String regionFingerprint;
+		private final List<InputSplit> splitList;
+		private final long createdTime;
+
+		public SplitCacheEntry(String physicalTableName, String regionFingerprint, List<InputSplit> splitList) {
+			this.physicalTableName = physicalTableName;
+			this.regionFingerprint = regionFingerprint;
+			this.splitList = splitList;
+			this.createdTime = System.currentTimeMillis();
+		}
+	}
+}
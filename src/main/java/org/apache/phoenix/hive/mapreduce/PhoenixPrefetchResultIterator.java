@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.mapreduce;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.phoenix.iterate.PeekingResultIterator;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.schema.tuple.Tuple;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Reads scans of a split concurrently with bounded number of threads.
+ *
+ * Tuples are handed over through bounded queues, so a scan stops reading when the consumer falls behind.
+ * In ordered mode each scan has its own queue and tuples are returned in scan order.
+ * Otherwise all scans share one queue and tuples are returned as they arrive.
+ */
+public class PhoenixPrefetchResultIterator implements ResultIterator {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixPrefetchResultIterator.class);
+
+	private static final Object END_OF_SCAN = new Object();
+
+	private final List<PeekingResultIterator> iterators;
+	private final List<BlockingQueue<Object>> queues;
+	private final boolean ordered;
+	private final int threadCount;
+	private final ExecutorService executor;
+
+	private int currentIndex;
+	private int finishedCount;
+	private boolean closed;
+
+	public PhoenixPrefetchResultIterator(List<PeekingResultIterator> iterators, int threadCount, int prefetchDepth, boolean ordered) {
+		this.iterators = iterators;
+		this.ordered = ordered;
+		this.threadCount = Math.max(1, Math.min(threadCount, iterators.size()));
+		this.queues = Lists.newArrayListWithExpectedSize(ordered ? iterators.size() : 1);
+
+		if (ordered) {
+			int queueCapacity = Math.max(1, prefetchDepth / this.threadCount);
+			for (int i = 0, limit = iterators.size(); i < limit; i++) {
+				queues.add(new ArrayBlockingQueue<Object>(queueCapacity));
+			}
+		} else {
+			queues.add(new ArrayBlockingQueue<Object>(Math.max(1, prefetchDepth)));
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<<<<<<<<<< [scan count, thread count, prefetch depth, ordered] : [" + iterators.size() + ", " + this.threadCount + ", " + prefetchDepth + ", " + ordered + "] >>>>>>>>>>");
+		}
+
+		// Scans are submitted in order so that the scan being consumed in ordered mode is always started before the later ones.
+		executor = Executors.newFixedThreadPool(this.threadCount, new ThreadFactoryBuilder().setNameFormat("phoenix-prefetch-%d").setDaemon(true).build());
+		for (int i = 0, limit = iterators.size(); i < limit; i++) {
+			executor.execute(new PrefetchTask(iterators.get(i), ordered ? queues.get(i) : queues.get(0)));
+		}
+	}
+
+	@Override
+	public Tuple next() throws SQLException {
+		while (!closed && finishedCount < iterators.size()) {
+			BlockingQueue<Object> queue = ordered ? queues.get(currentIndex) : queues.get(0);
+
+			Object element = null;
+			try {
+				element = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException(e);
+			}
+
+			if (element == END_OF_SCAN) {
+				finishedCount++;
+				currentIndex++;
+			} else if (element instanceof PrefetchFailure) {
+				throw ((PrefetchFailure)element).cause;
+			} else {
+				return (Tuple)element;
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		SQLException exception = null;
+		for (PeekingResultIterator iterator : iterators) {
+			try {
+				iterator.close();
+			} catch (SQLException e) {
+				exception = e;
+			}
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	@Override
+	public void explain(List<String> planSteps) {
+		planSteps.add("CLIENT PREFETCH " + iterators.size() + " SCANS WITH " + threadCount + " THREADS" + (ordered ? " IN ORDER" : ""));
+	}
+
+	private static class PrefetchTask implements Runnable {
+		private final ResultIterator iterator;
+		private final BlockingQueue<Object> queue;
+
+		public PrefetchTask(ResultIterator iterator, BlockingQueue<Object> queue) {
+			this.iterator = iterator;
+			this.queue = queue;
+		}
+
+		@Override
+		public void run() {
+			try {
+				try {
+					for (Tuple tuple = iterator.next(); tuple != null; tuple = iterator.next()) {
+						queue.put(tuple);
+					}
+
+					queue.put(END_OF_SCAN);
+				} catch (SQLException e) {
+					queue.put(new PrefetchFailure(e));
+				} catch (RuntimeException e) {
+					queue.put(new PrefetchFailure(new SQLException(e)));
+				}
+			} catch (InterruptedException e) {
+				// closed by consumer.
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static class PrefetchFailure {
+		private final SQLException cause;
+
+		public PrefetchFailure(SQLException cause) {
+			this.cause = cause;
+		}
+	}
+}
@@ -34,10 +34,17 @@ import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.RecordReader;
 import org.apache.hadoop.mapreduce.lib.db.DBWritable;
 import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
 import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.RowProjector;
 import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.hive.PhoenixRowKey;
+import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
+import org.apache.phoenix.hive.query.PhoenixPredicateTranslator;
+import org.apache.phoenix.hive.query.PhoenixPushedPredicate;
+import org.apache.phoenix.hive.query.PhoenixSemiJoinFilter;
+import org.apache.phoenix.hive.util.PhoenixConnectionRegistry;
 import org.apache.phoenix.hive.util.PhoenixStorageHandlerUtil;
 import org.apache.phoenix.iterate.ConcatResultIterator;
 import org.apache.phoenix.iterate.LookAheadResultIterator;
@@ -47,6 +54,7 @@ import org.apache.phoenix.iterate.RoundRobinResultIterator;
 import org.apache.phoenix.iterate.SequenceResultIterator;
 import org.apache.phoenix.iterate.TableResultIterator;
 import org.apache.phoenix.jdbc.PhoenixResultSet;
+import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
 
 import com.google.common.base.Throwables;
@@ -70,16 +78,30 @@ public class PhoenixRecordReader<T extends DBWritable> implements RecordReader<W
 //    private Constructor<T> constructor;
     private ResultIterator resultIterator = null;
     private PhoenixResultSet resultSet;
+    private RowProjector rowProjector;
     private long readCount;
+    private long splitLength;
+    private PhoenixSplitProgress splitProgress;
     
     private boolean isTransactional;
     
+    private PhoenixSemiJoinFilter semiJoinFilter;
+    private String semiJoinColumnName;
+    private long filteredCount;
+    
 	public PhoenixRecordReader(Class<T> inputClass,final Configuration configuration,final QueryPlan queryPlan) throws IOException {
         this.inputClass = inputClass;
         this.configuration = configuration;
         this.queryPlan = queryPlan;
         
         isTransactional = PhoenixStorageHandlerUtil.isTransactionalTable(configuration);
+        
+        // semijoin filter pushed to this scan only.
+        PhoenixPushedPredicate pushedPredicate = PhoenixPredicateTranslator.getPushedPredicate(configuration);
+        semiJoinFilter = pushedPredicate == null ? null : pushedPredicate.getSemiJoinFilter();
+        if (semiJoinFilter != null) {
+        	semiJoinColumnName = semiJoinFilter.getColumnName().toUpperCase();
+        }
     }
 
 	public void initialize(InputSplit split) throws IOException {
@@ -111,17 +133,36 @@ public class PhoenixRecordReader<T extends DBWritable> implements RecordReader<W
 				PeekingResultIterator peekingResultIterator = LookAheadResultIterator.wrap(tableResultIterator);
 				iterators.add(peekingResultIterator);
 			}
-			ResultIterator iterator = queryPlan.useRoundRobinIterator()
-					? RoundRobinResultIterator.newIterator(iterators, queryPlan)
-					: ConcatResultIterator.newIterator(iterators);
+			String inputTableName = configuration.get(PhoenixConfigurationUtil.INPUT_TABLE_NAME);
+			int prefetchThreads = configuration.getInt(inputTableName.toLowerCase() + PhoenixStorageHandlerConstants.PREFETCH_THREADS, 0);
+			
+			// split of a salt bucket must be read in row key order.
+			boolean bucketing = configuration.getBoolean(inputTableName.toLowerCase() + PhoenixStorageHandlerConstants.BUCKETING, false);
+			boolean ordered = bucketing || queryPlan.getOrderBy() != OrderBy.EMPTY_ORDER_BY;
+			boolean roundRobin = !bucketing && queryPlan.useRoundRobinIterator();
+			
+			ResultIterator iterator = null;
+			boolean prefetch = prefetchThreads > 0 && iterators.size() > 1;
+			if (prefetch) {
+				int prefetchDepth = configuration.getInt(inputTableName.toLowerCase() + PhoenixStorageHandlerConstants.PREFETCH_DEPTH, PhoenixStorageHandlerConstants.DEFAULT_PREFETCH_DEPTH);
+				
+				iterator = new PhoenixPrefetchResultIterator(iterators, prefetchThreads, prefetchDepth, ordered);
+			} else {
+				iterator = roundRobin
+						? RoundRobinResultIterator.newIterator(iterators, queryPlan)
+						: ConcatResultIterator.newIterator(iterators);
+			}
 			if (queryPlan.getContext().getSequenceManager().getSequenceCount() > 0) {
 				iterator = new SequenceResultIterator(iterator, queryPlan.getContext().getSequenceManager());
 			}
 			this.resultIterator = iterator;
+			this.splitLength = pSplit.getLength();
+			this.splitProgress = new PhoenixSplitProgress(scans, prefetch || roundRobin);
 			// Clone the row projector as it's not thread safe and would be used
 			// simultaneously by
 			// multiple threads otherwise.
-			this.resultSet = new PhoenixResultSet(this.resultIterator, queryPlan.getProjector().cloneIfNecessary(),
+			this.rowProjector = queryPlan.getProjector().cloneIfNecessary();
+			this.resultSet = new PhoenixResultSet(this.resultIterator, rowProjector,
 					queryPlan.getContext());
 		} catch (SQLException e) {
 			LOG.error(String.format(" Error [%s] initializing PhoenixRecordReader. ", e.getMessage()));
@@ -132,10 +173,14 @@ public class PhoenixRecordReader<T extends DBWritable> implements RecordReader<W
 	@Override
 	public boolean next(WritableComparable key, T value) throws IOException {
         try {
-            if(!resultSet.next()) {
-                return false;
-            }
-            value.readFields(resultSet);
+            do {
+            	if(!resultSet.next()) {
+            		splitProgress.finish();
+            		return false;
+            	}
+            	splitProgress.setLastTuple(resultSet.getCurrentRow());
+            	value.readFields(resultSet);
+            } while (isFilteredBySemiJoin(value));
             
             if (isTransactional) {
             	((PhoenixResultWritable)value).readPrimaryKey((PhoenixRowKey)key);
@@ -154,6 +199,16 @@ public class PhoenixRecordReader<T extends DBWritable> implements RecordReader<W
         }
 	}
 
+	// rows whose join key is not in the build side of the join are skipped.
+	private boolean isFilteredBySemiJoin(T value) {
+		if (semiJoinFilter == null || semiJoinFilter.mightContain(((PhoenixResultWritable)value).getValue(semiJoinColumnName))) {
+			return false;
+		}
+		
+		++filteredCount;
+		return true;
+	}
+
 	@Override
 	public WritableComparable createKey() {
 		if (isTransactional) {
@@ -168,34 +223,49 @@ public class PhoenixRecordReader<T extends DBWritable> implements RecordReader<W
 	@Override
 	public T createValue() {
 		value =  ReflectionUtils.newInstance(inputClass, this.configuration);
+		
+		String inputTableName = configuration.get(PhoenixConfigurationUtil.INPUT_TABLE_NAME);
+		boolean lazyDecode = configuration.getBoolean(inputTableName.toLowerCase() + PhoenixStorageHandlerConstants.LAZY_DECODE, false);
+		boolean binaryDecode = configuration.getBoolean(inputTableName.toLowerCase() + PhoenixStorageHandlerConstants.BINARY_DECODE, false);
+		
+		if (value instanceof PhoenixResultWritable && (lazyDecode || binaryDecode)) {
+			((PhoenixResultWritable)value).setRowProjector(rowProjector, lazyDecode, binaryDecode);
+		}
+		
 		return value;
 	}
 
 	@Override
 	public long getPos() throws IOException {
-		return 0;
+		return (long)(getProgress() * splitLength);
 	}
 
 	@Override
 	public void close() throws IOException {
 		if (LOG.isInfoEnabled()) {
 			LOG.info("<<<<<<<<<< Read Count : " + readCount + " >>>>>>>>>>");
+			
+			if (semiJoinFilter != null) {
+				LOG.info("<<<<<<<<<< Semijoin Filtered Count : " + filteredCount + " >>>>>>>>>>");
+			}
 		}
 		
-		if (resultIterator != null) {
-			try {
+		try {
+			if (resultIterator != null) {
 				resultIterator.close();
-			} catch (SQLException e) {
-				LOG.error(" Error closing resultset.");
-				throw new RuntimeException(e);
 			}
+		} catch (SQLException e) {
+			LOG.error(" Error closing resultset.");
+			throw new RuntimeException(e);
+		} finally {
+			PhoenixConnectionRegistry.getInstance().release(queryPlan.getContext().getConnection());
 		}
 		
 	}
 
 	@Override
 	public float getProgress() throws IOException {
-		return 0;
+		return splitProgress == null ? 0 : splitProgress.getProgress();
 	}
 
 }
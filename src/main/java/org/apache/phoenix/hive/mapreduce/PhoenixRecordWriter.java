@@ -21,12 +21,19 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.io.AcidOutputFormat;
 import org.apache.hadoop.hive.ql.io.RecordUpdater;
 import org.apache.hadoop.hive.serde2.SerDeException;
@@ -37,6 +44,7 @@ import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.RecordWriter;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapreduce.lib.db.DBWritable;
+import org.apache.phoenix.hive.PhoenixBulkLoadHook;
 import org.apache.phoenix.hive.PhoenixSerializer;
 import org.apache.phoenix.hive.PhoenixSerializer.DmlType;
 import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
@@ -47,8 +55,14 @@ import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
 import org.apache.phoenix.schema.ConcurrentTableMutationException;
 import org.apache.phoenix.schema.MetaDataClient;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.IndexType;
+import org.apache.phoenix.util.ColumnInfo;
+import org.apache.phoenix.util.PhoenixRuntime;
 import org.apache.phoenix.util.QueryUtil;
 
+import com.google.common.collect.Lists;
+
 /**
  * 
  * WARNING : There is possibility that WAL disable setting not working properly. 
@@ -69,6 +83,17 @@ public class PhoenixRecordWriter<T extends DBWritable>  implements RecordWriter<
     private String tableName;
     private MetaDataClient metaDataClient;
     private boolean restoreWalMode;
+    // rows are written to hbase without upsert statement if not null.
+    private PhoenixDirectMutator directMutator;
+    // key values of upserted rows are written to hfiles without commit if not null.
+    private PhoenixHFileWriter hfileWriter;
+    // batches are committed in background if not null. conn and pstmt are switched to a free connection on each commit.
+    private PhoenixAsyncCommitter asyncCommitter;
+    // batch is committed by estimated bytes if not null. Otherwise by row count.
+    private PhoenixCommitPolicy commitPolicy;
+    private final List<Connection> connectionList = Lists.newArrayList();
+    private final Map<Connection, PreparedStatement> upsertStatementMap = new IdentityHashMap<>();
+    private final Map<Connection, PreparedStatement> deleteStatementMap = new IdentityHashMap<>();
     
     // For RecordUpdater
     private long rowCountDelta = 0;
@@ -82,7 +107,7 @@ public class PhoenixRecordWriter<T extends DBWritable>  implements RecordWriter<
     	Properties props = new Properties();
     	
     	try {
-			initialize(config, props);
+			initialize(config, props, false);
 		} catch (SQLException e) {
 			throw new IOException(e);
 		}
@@ -96,10 +121,11 @@ public class PhoenixRecordWriter<T extends DBWritable>  implements RecordWriter<
     }
     
 	public PhoenixRecordWriter(final Configuration configuration, final Properties props) throws SQLException {
-		initialize(configuration, props);
+		initialize(configuration, props, true);
     }
 
-	private void initialize(Configuration config, Properties properties) throws SQLException {
+	// direct write is allowed for insert only, because delete of record updater is executed by statement.
+	private void initialize(Configuration config, Properties properties, boolean allowDirectWrite) throws SQLException {
 		this.config = config;
         tableName = config.get(PhoenixStorageHandlerConstants.PHOENIX_TABLE_NAME);
         
@@ -144,24 +170,160 @@ public class PhoenixRecordWriter<T extends DBWritable>  implements RecordWriter<
         	LOG.debug("<<<<<<<<<< batch-size : " + batchSize + " >>>>>>>>>>");
         }
         
-        String upsertQuery = QueryUtil.constructUpsertStatement(tableName, PhoenixUtil.getColumnInfoList(conn, tableName));
+        List<ColumnInfo> columnInfoList = PhoenixUtil.getColumnInfoList(conn, tableName);
+        String upsertQuery = QueryUtil.constructUpsertStatement(tableName, columnInfoList);
         
         if (LOG.isDebugEnabled()) {
         	LOG.debug("<<<<<<<<<< upsert-query : " + upsertQuery + " >>>>>>>>>>");
         }
         this.pstmt = this.conn.prepareStatement(upsertQuery);
+        
+        String bulkLoadConfigName = tableName.toLowerCase() + PhoenixStorageHandlerConstants.BULK_LOAD;
+        String directWriteConfigName = tableName.toLowerCase() + PhoenixStorageHandlerConstants.DIRECT_WRITE;
+        if (allowDirectWrite && config.getBoolean(bulkLoadConfigName, false) && isBulkLoadable()) {
+        	try {
+        		hfileWriter = new PhoenixHFileWriter(config, tableName);
+        	} catch (IOException e) {
+        		throw new SQLException(e);
+        	}
+        } else if (allowDirectWrite && config.getBoolean(directWriteConfigName, false)) {
+        	try {
+        		directMutator = PhoenixDirectMutator.create(config, (PhoenixConnection)conn, tableName, columnInfoList.size());
+        	} catch (IOException e) {
+        		throw new SQLException(e);
+        	}
+        }
+        
+        connectionList.add(conn);
+        upsertStatementMap.put(conn, pstmt);
+        
+        if (config.getBoolean(PhoenixStorageHandlerConstants.ADAPTIVE_BATCH, false) && hfileWriter == null && directMutator == null) {
+        	commitPolicy = new PhoenixCommitPolicy(config);
+        }
+        
+        int asyncCommits = config.getInt(PhoenixStorageHandlerConstants.ASYNC_COMMITS, 0);
+        if (asyncCommits > 0 && hfileWriter == null && directMutator == null) {
+        	List<Connection> freeConnectionList = Lists.newArrayListWithExpectedSize(asyncCommits);
+        	
+        	for (int i = 0; i < asyncCommits; i++) {
+        		Connection freeConnection = PhoenixConnectionUtil.getInputConnection(config, properties);
+        		connectionList.add(freeConnection);
+        		upsertStatementMap.put(freeConnection, freeConnection.prepareStatement(upsertQuery));
+        		freeConnectionList.add(freeConnection);
+        	}
+        	
+        	asyncCommitter = new PhoenixAsyncCommitter(freeConnectionList, commitPolicy);
+        	
+        	if (LOG.isDebugEnabled()) {
+        		LOG.debug("<<<<<<<<<< async commits : " + asyncCommits + " >>>>>>>>>>");
+        	}
+        }
+	}
+	
+	/**
+	 * Batch is committed. In async mode, commit is handed over to committer and writing continues on a free connection.
+	 */
+	private void commit() throws SQLException {
+		if (asyncCommitter == null) {
+			commit(conn);
+			return;
+		}
+		
+		conn = asyncCommitter.submit(conn);
+		pstmt = upsertStatementMap.get(conn);
+		pstmtForDelete = deleteStatementMap.get(conn);
+	}
+	
+	// all submitted batches and the current one are committed.
+	private void commitAll() throws SQLException {
+		if (asyncCommitter != null) {
+			asyncCommitter.await();
+		}
+		
+		commit(conn);
+	}
+	
+	private void commit(Connection connection) throws SQLException {
+		if (commitPolicy != null) {
+			commitPolicy.commit(connection);
+		} else {
+			connection.commit();
+		}
+	}
+	
+	private boolean isBatchFull(List<Object> valueList) {
+		return commitPolicy != null ? commitPolicy.add(PhoenixCommitPolicy.estimateSize(valueList)) : numRecords % batchSize == 0;
+	}
+	
+	// hfiles are loaded only by the hook, otherwise rows are lost. local index rows depend on the region of data row, so they can not be built by client.
+	private boolean isBulkLoadable() throws SQLException {
+		String postHooks = config.get(HiveConf.ConfVars.POSTEXECHOOKS.varname, "");
+		if (!postHooks.contains(PhoenixBulkLoadHook.class.getName())) {
+			LOG.warn("<<<<<<<<<< " + PhoenixBulkLoadHook.class.getName() + " is not in " + HiveConf.ConfVars.POSTEXECHOOKS.varname + ". upsert statement is used instead of bulk load. >>>>>>>>>>");
+			return false;
+		}
+		
+		PTable table = PhoenixRuntime.getTable(conn, tableName.toUpperCase());
+		
+		for (PTable index : table.getIndexes()) {
+			if (index.getIndexType() == IndexType.LOCAL) {
+				LOG.warn("<<<<<<<<<< " + tableName + " has local index " + index.getName().getString() + ". upsert statement is used instead of bulk load. >>>>>>>>>>");
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Uncommitted key values of data table and global indexes are moved to hfile writer and discarded from connection.
+	 */
+	private void writeUncommitted() throws IOException {
+		try {
+			Iterator<Pair<byte[], List<KeyValue>>> iterator = PhoenixRuntime.getUncommittedDataIterator(conn, true);
+			hfileWriter.newBatch();
+			
+			while (iterator.hasNext()) {
+				Pair<byte[], List<KeyValue>> pair = iterator.next();
+				hfileWriter.add(pair.getFirst(), pair.getSecond());
+			}
+			
+			conn.rollback();
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
 	}
 	
 	@Override
 	public void write(NullWritable key, T record) throws IOException {
+		if (directMutator != null) {
+			directMutator.mutate(((PhoenixResultWritable)record).getValueList());
+			numRecords++;
+			
+			if (numRecords % batchSize == 0) {
+				LOG.debug("<<<<<<<<<< flush called on a batch of size : " + batchSize + " >>>>>>>>>>");
+				directMutator.flush();
+			}
+			
+			return;
+		}
+		
 		try {
+			if (asyncCommitter != null) {
+				asyncCommitter.checkError();
+			}
+			
 			record.write(pstmt);
 			numRecords++;
 			pstmt.executeUpdate();
 			
-			if (numRecords % batchSize == 0) {
-                LOG.debug("<<<<<<<<<< commit called on a batch of size : " + batchSize + " >>>>>>>>>>");
-                conn.commit();
+			if (hfileWriter != null) {
+				if (numRecords % batchSize == 0) {
+					writeUncommitted();
+				}
+			} else if (isBatchFull(((PhoenixResultWritable)record).getValueList())) {
+                LOG.debug("<<<<<<<<<< commit called on a batch of size : " + (commitPolicy == null ? batchSize + " rows" : commitPolicy.getTargetBytes() + " bytes") + " >>>>>>>>>>");
+                commit();
             }
 		} catch (SQLException e) {
 			throw new IOException("Exception while writing to table.", e);
@@ -171,15 +333,41 @@ public class PhoenixRecordWriter<T extends DBWritable>  implements RecordWriter<
 	@Override
 	public void close(Reporter reporter) throws IOException {
 		try {
-			conn.commit();
+			if (hfileWriter != null) {
+				writeUncommitted();
+				hfileWriter.close();
+			}
+			
+			if (directMutator != null) {
+				// mutations are sent before wal mode is restored.
+				directMutator.close();
+				
+				if (LOG.isInfoEnabled()) {
+					LOG.info("<<<<<<<<<< written mutation : " + directMutator.getMutationCount() + " >>>>>>>>>>");
+				}
+			}
+			
+			commitAll();
 			
 			if (LOG.isInfoEnabled()) {
 				LOG.info("<<<<<<<<<< writen row : " + numRecords + " >>>>>>>>>>");
+				
+				if (asyncCommitter != null) {
+					LOG.info("<<<<<<<<<< async commit " + asyncCommitter.getMetrics() + " >>>>>>>>>>");
+				}
+				
+				if (commitPolicy != null) {
+					LOG.info("<<<<<<<<<< adaptive batch " + commitPolicy.getMetrics() + " >>>>>>>>>>");
+				}
 			}
 		} catch (SQLException e) {
 			LOG.error("SQLException while performing the commit for the task.");
 			throw new IOException(e);
 		} finally {
+			if (asyncCommitter != null) {
+				asyncCommitter.close();
+			}
+			
 			try {
 				if (restoreWalMode && PhoenixUtil.isDisabledWal(metaDataClient, tableName)) {
 					try {
@@ -206,9 +394,11 @@ public class PhoenixRecordWriter<T extends DBWritable>  implements RecordWriter<
                 	PhoenixUtil.flush(conn, tableName);
                 }
                 
-                PhoenixUtil.closeResource(pstmt);
-                PhoenixUtil.closeResource(pstmtForDelete);
-                PhoenixUtil.closeResource(conn);
+                for (Connection connection : connectionList) {
+                	PhoenixUtil.closeResource(upsertStatementMap.get(connection));
+                	PhoenixUtil.closeResource(deleteStatementMap.get(connection));
+                	PhoenixUtil.closeResource(connection);
+                }
 			} catch (SQLException ex) {
 				LOG.error("SQLException while closing the connection for the task.");
 				throw new IOException(ex);
@@ -231,6 +421,17 @@ public class PhoenixRecordWriter<T extends DBWritable>  implements RecordWriter<
 
 	@Override
 	public void close(boolean abort) throws IOException {
+		if (abort && hfileWriter != null) {
+			try {
+				conn.rollback();
+			} catch (SQLException e) {
+				throw new IOException(e);
+			} finally {
+				hfileWriter.abort();
+				hfileWriter = null;
+			}
+		}
+		
 		close(Reporter.NULL);
 	}
 
@@ -287,6 +488,7 @@ public class PhoenixRecordWriter<T extends DBWritable>  implements RecordWriter<
 				}
 				
 				pstmtForDelete = conn.prepareStatement(deleteQuery);
+				deleteStatementMap.put(conn, pstmtForDelete);
 			} catch (SQLException e) {
 				throw new IOException(e);
 			}
@@ -299,13 +501,17 @@ public class PhoenixRecordWriter<T extends DBWritable>  implements RecordWriter<
 
 	private void delete(PhoenixResultWritable pResultWritable) throws IOException {
 		try {
+			if (asyncCommitter != null) {
+				asyncCommitter.checkError();
+			}
+			
 			pResultWritable.delete(pstmtForDelete);
 			numRecords++;
 			pstmtForDelete.executeUpdate();
 			
-			if (numRecords % batchSize == 0) {
-                LOG.debug("<<<<<<<<<< commit called on a batch of size : " + batchSize + " >>>>>>>>>>");
-                conn.commit();
+			if (isBatchFull(pResultWritable.getValueList())) {
+                LOG.debug("<<<<<<<<<< commit called on a batch of size : " + (commitPolicy == null ? batchSize + " rows" : commitPolicy.getTargetBytes() + " bytes") + " >>>>>>>>>>");
+                commit();
             }
 		} catch (SQLException e) {
 			throw new IOException("Exception while deleting to table.", e);
@@ -319,7 +525,11 @@ public class PhoenixRecordWriter<T extends DBWritable>  implements RecordWriter<
 		}
 		
 		try {
-			conn.commit();
+			if (directMutator != null) {
+				directMutator.flush();
+			}
+			
+			commitAll();
 			
 			if (LOG.isInfoEnabled()) {
 				LOG.info("<<<<<<<<<< writen row : " + numRecords + " >>>>>>>>>>");
@@ -24,6 +24,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -31,12 +32,31 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.lib.db.DBWritable;
+import org.apache.phoenix.compile.ColumnProjector;
+import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.hive.PhoenixRowKey;
 import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
 import org.apache.phoenix.hive.util.PhoenixStorageHandlerUtil;
 import org.apache.phoenix.hive.util.PhoenixUtil;
+import org.apache.phoenix.jdbc.PhoenixResultSet;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarchar;
 import org.apache.phoenix.util.ColumnInfo;
 
 import com.google.common.collect.Lists;
@@ -52,7 +72,26 @@ public class PhoenixResultWritable implements Writable, DBWritable, Configurable
 	
 	private List<ColumnInfo> columnMetadataList;
     private List<Object> valueList;	// for output
-	private Map<String, Object> rowMap = Maps.newHashMap();  // for input
+	// for input. values are positional and column names are resolved once per result set.
+	private Object[] values;
+	private String[] columnNames;
+	private Map<String, Integer> columnIndexMap;
+	
+	// values are decoded from tuple if row projector is given.
+	private RowProjector rowProjector;
+	private Tuple currentTuple;
+	private boolean[] decoded;
+	private boolean lazyDecode;
+	
+	// ascending VARCHAR, INTEGER and BIGINT are decoded from bytes into reused writable of each column.
+	private static final byte DECODE_OBJECT = 0;
+	private static final byte DECODE_TEXT = 1;
+	private static final byte DECODE_INT = 2;
+	private static final byte DECODE_LONG = 3;
+	private boolean binaryDecode;
+	private byte[] decodeTypes;
+	private Writable[] writables;
+	private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
     
     private int columnCount = -1;
 
@@ -150,17 +189,23 @@ public class PhoenixResultWritable implements Writable, DBWritable, Configurable
 	
 	@Override
 	public void readFields(ResultSet resultSet) throws SQLException {
-		ResultSetMetaData rsmd = resultSet.getMetaData();
 		if(columnCount == -1) {
-            this.columnCount = rsmd.getColumnCount();
+			initColumns(resultSet.getMetaData());
         }
-  
-		rowMap.clear();
 		
-        for(int i = 0 ; i < columnCount ; i++) {
-            Object value = resultSet.getObject(i + 1);
-            
-            rowMap.put(rsmd.getColumnName(i + 1), value);
+        if (rowProjector != null) {
+        	currentTuple = resultSet.unwrap(PhoenixResultSet.class).getCurrentRow();
+        	Arrays.fill(decoded, false);
+        	
+        	if (!lazyDecode) {
+        		for (int i = 0; i < columnCount; i++) {
+        			getValue(i);
+        		}
+        	}
+        } else {
+	        for(int i = 0 ; i < columnCount ; i++) {
+	            values[i] = resultSet.getObject(i + 1);
+	        }
         }
         
         // 2016-01-27 Added by JeongMin Ju : Adding row__id column.
@@ -168,7 +213,7 @@ public class PhoenixResultWritable implements Writable, DBWritable, Configurable
         	rowKeyMap.clear();
         	
         	for (String pkColumn : primaryKeyColumnList) {
-        		rowKeyMap.put(pkColumn, rowMap.get(pkColumn));
+        		rowKeyMap.put(pkColumn, getValue(pkColumn));
         	}
         	
 //        	Object[] rowId = new Object[]{PhoenixStorageHandlerConstants.INT_ZERO, PhoenixStorageHandlerConstants.INT_ZERO, rowKeyMap};
@@ -177,6 +222,143 @@ public class PhoenixResultWritable implements Writable, DBWritable, Configurable
         }
 	}
 	
+	private void initColumns(ResultSetMetaData rsmd) throws SQLException {
+		columnCount = rsmd.getColumnCount();
+		values = new Object[columnCount];
+		decoded = new boolean[columnCount];
+		columnNames = new String[columnCount];
+		columnIndexMap = Maps.newHashMapWithExpectedSize(columnCount);
+		
+		for (int i = 0; i < columnCount; i++) {
+			columnNames[i] = rsmd.getColumnName(i + 1);
+			columnIndexMap.put(columnNames[i], i);
+		}
+		
+		decodeTypes = new byte[columnCount];
+		writables = new Writable[columnCount];
+		
+		Map<String, PrimitiveCategory> hiveColumnCategoryMap = rowProjector != null && binaryDecode ? getHiveColumnCategoryMap() : null;
+		
+		for (int i = 0; i < columnCount && rowProjector != null && binaryDecode; i++) {
+			Expression expression = rowProjector.getColumnProjector(i).getExpression();
+			
+			if (expression.getSortOrder() != SortOrder.ASC) {
+				continue;
+			}
+			
+			// writable is given only to object inspector of the same type. ex) char or bigint column over phoenix VARCHAR or INTEGER is decoded as object.
+			PrimitiveCategory hiveCategory = hiveColumnCategoryMap.get(columnNames[i]);
+			
+			if (expression.getDataType() == PVarchar.INSTANCE && (hiveCategory == PrimitiveCategory.STRING || hiveCategory == PrimitiveCategory.VARCHAR)) {
+				decodeTypes[i] = DECODE_TEXT;
+				writables[i] = new Text();
+			} else if (expression.getDataType() == PInteger.INSTANCE && hiveCategory == PrimitiveCategory.INT) {
+				decodeTypes[i] = DECODE_INT;
+				writables[i] = new IntWritable();
+			} else if (expression.getDataType() == PLong.INSTANCE && hiveCategory == PrimitiveCategory.LONG) {
+				decodeTypes[i] = DECODE_LONG;
+				writables[i] = new LongWritable();
+			}
+		}
+	}
+	
+	// primitive category of hive columns by upper case name, as the serde looks up result columns.
+	private Map<String, PrimitiveCategory> getHiveColumnCategoryMap() {
+		Map<String, PrimitiveCategory> hiveColumnCategoryMap = Maps.newHashMap();
+		String columnNames = config == null ? null : config.get(serdeConstants.LIST_COLUMNS);
+		String columnTypes = config == null ? null : config.get(serdeConstants.LIST_COLUMN_TYPES);
+		
+		if (columnNames == null || columnTypes == null) {
+			return hiveColumnCategoryMap;
+		}
+		
+		List<String> columnNameList = Lists.newArrayList(columnNames.split(PhoenixStorageHandlerConstants.COMMA));
+		List<TypeInfo> typeInfoList = TypeInfoUtils.getTypeInfosFromTypeString(columnTypes);
+		
+		for (int i = 0, limit = Math.min(columnNameList.size(), typeInfoList.size()); i < limit; i++) {
+			if (typeInfoList.get(i) instanceof PrimitiveTypeInfo) {
+				hiveColumnCategoryMap.put(columnNameList.get(i).toUpperCase(), ((PrimitiveTypeInfo)typeInfoList.get(i)).getPrimitiveCategory());
+			}
+		}
+		
+		return hiveColumnCategoryMap;
+	}
+	
+	public String[] getColumnNames() {
+		return columnNames;
+	}
+	
+	/**
+	 * Index of column in result or -1 if not exist.
+	 */
+	public int getColumnIndex(String columnName) {
+		Integer columnIndex = columnIndexMap.get(columnName);
+		
+		return columnIndex == null ? -1 : columnIndex;
+	}
+	
+	public Object getValue(int columnIndex) {
+		if (rowProjector != null && !decoded[columnIndex]) {
+			values[columnIndex] = decodeValue(columnIndex);
+			decoded[columnIndex] = true;
+		}
+		
+		return values[columnIndex];
+	}
+	
+	public Object getValue(String columnName) {
+		int columnIndex = getColumnIndex(columnName);
+		
+		return columnIndex < 0 ? null : getValue(columnIndex);
+	}
+	
+	// same as PhoenixResultSet.getObject
+	private Object decodeValue(int columnIndex) {
+		ColumnProjector projector = rowProjector.getColumnProjector(columnIndex);
+		
+		if (decodeTypes[columnIndex] != DECODE_OBJECT) {
+			return decodeBinary(columnIndex, projector.getExpression());
+		}
+		
+		try {
+			return projector.getValue(currentTuple, projector.getExpression().getDataType(), ptr);
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	// Phoenix INTEGER and BIGINT are big endian with sign bit flipped. VARCHAR is UTF-8.
+	private Writable decodeBinary(int columnIndex, Expression expression) {
+		if (!expression.evaluate(currentTuple, ptr) || ptr.getLength() == 0) {
+			return null;
+		}
+		
+		switch (decodeTypes[columnIndex]) {
+		case DECODE_TEXT:
+			((Text)writables[columnIndex]).set(ptr.get(), ptr.getOffset(), ptr.getLength());
+			break;
+		case DECODE_INT:
+			((IntWritable)writables[columnIndex]).set(Bytes.toInt(ptr.get(), ptr.getOffset()) ^ Integer.MIN_VALUE);
+			break;
+		case DECODE_LONG:
+			((LongWritable)writables[columnIndex]).set(Bytes.toLong(ptr.get(), ptr.getOffset()) ^ Long.MIN_VALUE);
+			break;
+		}
+		
+		return writables[columnIndex];
+	}
+	
+	/**
+	 * Values are decoded from tuple. Projector must be the one used by the result set given to readFields.
+	 * If lazyDecode, value is decoded when accessed first.
+	 * If binaryDecode, ascending VARCHAR, INTEGER and BIGINT values of hive string/varchar, int and bigint columns are given as reused Text, IntWritable and LongWritable.
+	 */
+	public void setRowProjector(RowProjector rowProjector, boolean lazyDecode, boolean binaryDecode) {
+		this.rowProjector = rowProjector;
+		this.lazyDecode = lazyDecode;
+		this.binaryDecode = binaryDecode && !isTransactional;
+	}
+	
 	public void readPrimaryKey(PhoenixRowKey rowKey) {
 		rowKey.setPrimaryKeyMap(rowKeyMap);
 //		rowKey.setPrimaryKeyMap(Maps.transformValues(rowKeyMap, new Function<Object, String>() {
@@ -196,7 +378,16 @@ public class PhoenixResultWritable implements Writable, DBWritable, Configurable
         this.columnMetadataList = columnMetadataList;
     }
 
+	/**
+	 * Built on every call. Use only for logging.
+	 */
 	public Map<String, Object> getResultMap() {
+		Map<String, Object> rowMap = Maps.newLinkedHashMap();
+		
+		for (int i = 0; i < columnCount; i++) {
+			rowMap.put(columnNames[i], getValue(i));
+		}
+		
 		return rowMap;
 	}
 
@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.mapreduce;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.tuple.Tuple;
+
+/**
+ * Progress of a split estimated from the row key read last.
+ *
+ * Each scan contributes equally. Position in a scan is interpolated between its start and stop row
+ * after the common prefix(e.g. salt byte) of start and stop row is removed.
+ * Progress of a scan never goes backward, so scans read concurrently are also supported.
+ */
+public class PhoenixSplitProgress {
+
+	// Number of bytes after common prefix used for interpolation.
+	private static final int INTERPOLATION_BYTES = 7;
+
+	private final List<Scan> scans;
+	private final float[] scanProgresses;
+	private final boolean concurrent;
+	private final ImmutableBytesWritable rowKeyPtr = new ImmutableBytesWritable();
+
+	private volatile Tuple lastTuple;
+	private volatile boolean finished;
+
+	public PhoenixSplitProgress(List<Scan> scans, boolean concurrent) {
+		this.scans = scans;
+		this.concurrent = concurrent;
+		this.scanProgresses = new float[scans.size()];
+	}
+
+	public void setLastTuple(Tuple lastTuple) {
+		this.lastTuple = lastTuple;
+	}
+
+	public void finish() {
+		finished = true;
+	}
+
+	public synchronized float getProgress() {
+		if (finished) {
+			return 1.0f;
+		}
+
+		Tuple tuple = lastTuple;
+		if (tuple == null) {
+			return 0.0f;
+		}
+
+		tuple.getKey(rowKeyPtr);
+		int scanIndex = findScan(rowKeyPtr);
+		Scan scan = scans.get(scanIndex);
+
+		// scans are read one after another unless concurrent, so scans before current one are finished.
+		for (int i = 0; i < scanIndex && !concurrent; i++) {
+			scanProgresses[i] = 1.0f;
+		}
+		scanProgresses[scanIndex] = Math.max(scanProgresses[scanIndex], interpolate(scan.getStartRow(), scan.getStopRow(), rowKeyPtr));
+
+		float progressSum = 0;
+		for (float scanProgress : scanProgresses) {
+			progressSum += scanProgress;
+		}
+
+		return Math.min(1.0f, progressSum / scanProgresses.length);
+	}
+
+	// Index of last scan whose start row is less than or equal to key.
+	private int findScan(ImmutableBytesWritable key) {
+		int low = 0;
+		int high = scans.size() - 1;
+
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			byte[] startRow = scans.get(mid).getStartRow();
+
+			if (Bytes.compareTo(startRow, 0, startRow.length, key.get(), key.getOffset(), key.getLength()) <= 0) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		return low;
+	}
+
+	private float interpolate(byte[] startRow, byte[] stopRow, ImmutableBytesWritable key) {
+		int prefixLength = 0;
+		if (stopRow.length > 0) {
+			int limit = Math.min(startRow.length, stopRow.length);
+			while (prefixLength < limit && startRow[prefixLength] == stopRow[prefixLength]) {
+				prefixLength++;
+			}
+		}
+
+		long start = toLong(startRow, 0, startRow.length, prefixLength);
+		// empty stop row means end of table.
+		long stop = stopRow.length == 0 ? (1L << (INTERPOLATION_BYTES * 8)) - 1 : toLong(stopRow, 0, stopRow.length, prefixLength);
+		long current = toLong(key.get(), key.getOffset(), key.getLength(), prefixLength);
+
+		if (stop <= start) {
+			return 0.0f;
+		}
+
+		float progress = (float)(current - start) / (stop - start);
+		return Math.max(0.0f, Math.min(1.0f, progress));
+	}
+
+	// Unsigned big endian value of INTERPOLATION_BYTES bytes after prefix. Missing bytes are regarded as zero.
+	private long toLong(byte[] bytes, int offset, int length, int prefixLength) {
+		long value = 0;
+
+		for (int i = 0; i < INTERPOLATION_BYTES; i++) {
+			int position = prefixLength + i;
+			value = (value << 8) | (position < length ? (bytes[offset + position] & 0xFF) : 0);
+		}
+
+		return value;
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.mapreduce;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedInputFormatInterface;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.InputFormat;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+
+/**
+ * Input format for vectorized execution. Set phoenix.input.format.class table property to use it.
+ * Splits are same as PhoenixInputFormat.
+ */
+@SuppressWarnings("rawtypes")
+public class PhoenixVectorizedInputFormat implements InputFormat<NullWritable, VectorizedRowBatch>, VectorizedInputFormatInterface {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixVectorizedInputFormat.class);
+
+	private final PhoenixInputFormat<PhoenixResultWritable> rowInputFormat = new PhoenixInputFormat<PhoenixResultWritable>();
+
+	@Override
+	public InputSplit[] getSplits(JobConf jobConf, int numSplits) throws IOException {
+		return rowInputFormat.getSplits(jobConf, numSplits);
+	}
+
+	@Override
+	public RecordReader<NullWritable, VectorizedRowBatch> getRecordReader(InputSplit split, JobConf job, Reporter reporter) throws IOException {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<<<<<<<<<< vectorized reader created >>>>>>>>>>");
+		}
+
+		RecordReader<WritableComparable, PhoenixResultWritable> rowReader = rowInputFormat.getRecordReader(split, job, reporter);
+
+		return new PhoenixVectorizedRecordReader(rowReader, job, (PhoenixInputSplit)split);
+	}
+}
@@ -0,0 +1,231 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.mapreduce;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.TimestampUtils;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
+import org.apache.hadoop.hive.serde2.io.DateWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Fills VectorizedRowBatch with rows read by PhoenixRecordReader.
+ *
+ * Only columns read by the query are filled. Type of column vector is decided by VectorizedRowBatchCtx from the table schema.
+ */
+@SuppressWarnings("rawtypes")
+public class PhoenixVectorizedRecordReader implements RecordReader<NullWritable, VectorizedRowBatch> {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixVectorizedRecordReader.class);
+
+	private final RecordReader<WritableComparable, PhoenixResultWritable> rowReader;
+	private final WritableComparable rowKey;
+	private final PhoenixResultWritable rowValue;
+	private final VectorizedRowBatchCtx rbCtx;
+	private final int batchSize;
+
+	// hive column name(upper case) and position in batch of columns to be filled.
+	private final List<String> readColumnNames = Lists.newArrayList();
+	private final List<Integer> readColumnIds = Lists.newArrayList();
+	private int[] resultIndexes;
+
+	private boolean addPartitionCols = true;
+
+	public PhoenixVectorizedRecordReader(RecordReader<WritableComparable, PhoenixResultWritable> rowReader, JobConf jobConf, FileSplit split) throws IOException {
+		this.rowReader = rowReader;
+		this.rowKey = rowReader.createKey();
+		this.rowValue = rowReader.createValue();
+
+		try {
+			rbCtx = new VectorizedRowBatchCtx();
+			rbCtx.init(jobConf, split);
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+
+		batchSize = Math.max(1, Math.min(jobConf.getInt(PhoenixStorageHandlerConstants.VECTORIZED_BATCH_SIZE, VectorizedRowBatch.DEFAULT_SIZE), VectorizedRowBatch.DEFAULT_SIZE));
+
+		String[] columnNames = jobConf.get(serdeConstants.LIST_COLUMNS).split(PhoenixStorageHandlerConstants.COMMA);
+		List<Integer> columnIds = ColumnProjectionUtils.isReadAllColumns(jobConf) ? null : ColumnProjectionUtils.getReadColumnIDs(jobConf);
+
+		for (int i = 0; i < columnNames.length; i++) {
+			if (columnIds == null || columnIds.contains(i)) {
+				readColumnNames.add(columnNames[i].toUpperCase());
+				readColumnIds.add(i);
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<<<<<<<<<< [batch size, read columns] : [" + batchSize + ", " + readColumnNames + "] >>>>>>>>>>");
+		}
+	}
+
+	@Override
+	public boolean next(NullWritable key, VectorizedRowBatch batch) throws IOException {
+		batch.reset();
+		for (Integer columnId : readColumnIds) {
+			if (batch.cols[columnId] instanceof BytesColumnVector) {
+				((BytesColumnVector)batch.cols[columnId]).initBuffer();
+			}
+		}
+
+		if (addPartitionCols) {
+			try {
+				rbCtx.addPartitionColsToBatch(batch);
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+			addPartitionCols = false;
+		}
+
+		int rowCount = 0;
+		while (rowCount < batchSize && rowReader.next(rowKey, rowValue)) {
+			if (resultIndexes == null) {
+				mapColumns();
+			}
+
+			for (int i = 0, limit = resultIndexes.length; i < limit; i++) {
+				ColumnVector columnVector = batch.cols[readColumnIds.get(i)];
+				Object value = resultIndexes[i] < 0 ? null : rowValue.getValue(resultIndexes[i]);
+
+				setValue(columnVector, rowCount, value);
+			}
+
+			rowCount++;
+		}
+
+		batch.size = rowCount;
+		batch.selectedInUse = false;
+
+		return rowCount > 0;
+	}
+
+	// result columns are known after the first row is read.
+	private void mapColumns() {
+		resultIndexes = new int[readColumnNames.size()];
+
+		for (int i = 0, limit = readColumnNames.size(); i < limit; i++) {
+			resultIndexes[i] = rowValue.getColumnIndex(readColumnNames.get(i));
+		}
+	}
+
+	private void setValue(ColumnVector columnVector, int row, Object value) throws IOException {
+		if (value == null) {
+			columnVector.noNulls = false;
+			columnVector.isNull[row] = true;
+			return;
+		}
+
+		columnVector.isNull[row] = false;
+
+		if (columnVector instanceof LongColumnVector) {
+			((LongColumnVector)columnVector).vector[row] = toLong(value);
+		} else if (columnVector instanceof DoubleColumnVector) {
+			((DoubleColumnVector)columnVector).vector[row] = ((Number)value).doubleValue();
+		} else if (columnVector instanceof BytesColumnVector) {
+			if (value instanceof Text) {
+				((BytesColumnVector)columnVector).setVal(row, ((Text)value).getBytes(), 0, ((Text)value).getLength());
+			} else {
+				byte[] bytes = value instanceof byte[] ? (byte[])value : value.toString().getBytes(StandardCharsets.UTF_8);
+				((BytesColumnVector)columnVector).setVal(row, bytes, 0, bytes.length);
+			}
+		} else if (columnVector instanceof DecimalColumnVector) {
+			BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal)value : new BigDecimal(value.toString());
+			((DecimalColumnVector)columnVector).set(row, HiveDecimal.create(decimal));
+		} else {
+			throw new IOException("Unsupported column vector : " + columnVector.getClass().getName());
+		}
+	}
+
+	// long column vector holds integer types, boolean, date as days and timestamp as nano seconds.
+	private long toLong(Object value) throws IOException {
+		if (value instanceof Number) {
+			return ((Number)value).longValue();
+		} else if (value instanceof IntWritable) {
+			return ((IntWritable)value).get();
+		} else if (value instanceof LongWritable) {
+			return ((LongWritable)value).get();
+		} else if (value instanceof Boolean) {
+			return ((Boolean)value) ? 1 : 0;
+		} else if (value instanceof Timestamp) {
+			return TimestampUtils.getTimeNanoSec((Timestamp)value);
+		} else if (value instanceof Date) {
+			return DateWritable.dateToDays((Date)value);
+		} else if (value instanceof java.util.Date) {
+			return DateWritable.dateToDays(new Date(((java.util.Date)value).getTime()));
+		}
+
+		throw new IOException("Unsupported value for long column vector : " + value.getClass().getName());
+	}
+
+	@Override
+	public NullWritable createKey() {
+		return NullWritable.get();
+	}
+
+	@Override
+	public VectorizedRowBatch createValue() {
+		try {
+			return rbCtx.createVectorizedRowBatch();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public long getPos() throws IOException {
+		return rowReader.getPos();
+	}
+
+	@Override
+	public void close() throws IOException {
+		rowReader.close();
+	}
+
+	@Override
+	public float getProgress() throws IOException {
+		return rowReader.getProgress();
+	}
+}
@@ -33,14 +33,26 @@ public class PhoenixIntObjectInspector extends AbstractPhoenixObjectInspector<In
 	
 	@Override
 	public Object copyObject(Object o) {
+		if (o instanceof IntWritable) {
+			return new IntWritable(((IntWritable)o).get());
+		}
+		
 		return o == null ? null : new Integer((Integer)o);
 	}
 
+	@Override
+	public Object getPrimitiveJavaObject(Object o) {
+		// IntWritable is given when value is decoded from binary.
+		return o instanceof IntWritable ? ((IntWritable)o).get() : o;
+	}
+
 	@Override
 	public int get(Object o) {
 		Integer value = null;
 		
-		if (o != null) {
+		if (o instanceof IntWritable) {
+			value = ((IntWritable)o).get();
+		} else if (o != null) {
 			try {
 				value = ((Integer)o).intValue();
 			} catch (Exception e) {
@@ -54,6 +66,10 @@ public class PhoenixIntObjectInspector extends AbstractPhoenixObjectInspector<In
 	// 2016-04-04 added by JeongMin Ju : Used when map-join
 	@Override
 	public IntWritable getPrimitiveWritableObject(Object o) {
+		if (o instanceof IntWritable) {
+			return (IntWritable)o;
+		}
+		
 		return o == null ? null : new IntWritable((Integer)o);
 	}
 
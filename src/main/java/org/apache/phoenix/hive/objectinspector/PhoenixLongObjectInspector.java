@@ -33,14 +33,26 @@ public class PhoenixLongObjectInspector extends AbstractPhoenixObjectInspector<L
 
 	@Override
 	public Object copyObject(Object o) {
+		if (o instanceof LongWritable) {
+			return new LongWritable(((LongWritable)o).get());
+		}
+		
 		return o == null ? null : new Long((Long)o);
 	}
 
+	@Override
+	public Object getPrimitiveJavaObject(Object o) {
+		// LongWritable is given when value is decoded from binary.
+		return o instanceof LongWritable ? ((LongWritable)o).get() : o;
+	}
+
 	@Override
 	public long get(Object o) {
 		Long value = null;
 		
-		if (o != null) {
+		if (o instanceof LongWritable) {
+			value = ((LongWritable)o).get();
+		} else if (o != null) {
 			try {
 				value = ((Long)o).longValue();
 			} catch (Exception e) {
@@ -54,6 +66,10 @@ public class PhoenixLongObjectInspector extends AbstractPhoenixObjectInspector<L
 	// 2016-04-04 added by JeongMin Ju : Used when map-join
 	@Override
 	public LongWritable getPrimitiveWritableObject(Object o) {
+		if (o instanceof LongWritable) {
+			return (LongWritable)o;
+		}
+		
 		return o == null ? null : new LongWritable((Long)o);
 	}
 
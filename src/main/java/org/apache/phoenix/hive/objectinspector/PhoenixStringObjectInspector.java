@@ -38,11 +38,20 @@ public class PhoenixStringObjectInspector extends AbstractPhoenixObjectInspector
 
 	@Override
 	public Object copyObject(Object o) {
+		if (o instanceof Text) {
+			return new Text((Text)o);
+		}
+		
 		return o == null ? null : new String((String)o);
 	}
 
 	@Override
 	public String getPrimitiveJavaObject(Object o) {
+		// Text is given when value is decoded from binary.
+		if (o instanceof Text) {
+			return o.toString();
+		}
+		
 		return (String)o;
 	}
 
@@ -50,7 +59,9 @@ public class PhoenixStringObjectInspector extends AbstractPhoenixObjectInspector
 	public Text getPrimitiveWritableObject(Object o) {
 		Text value = null;
 		
-		if (o != null) {
+		if (o instanceof Text) {
+			value = (Text)o;
+		} else if (o != null) {
 			try {
 				value = new Text((String)o);
 			} catch (Exception e) {
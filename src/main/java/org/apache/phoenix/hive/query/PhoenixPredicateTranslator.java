@@ -0,0 +1,629 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.query;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.common.type.HiveChar;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.common.type.HiveVarchar;
+import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler.DecomposedPredicate;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDescUtils;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.plan.TableScanDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.ql.udf.UDFLike;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBetween;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBridge;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFIn;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFLower;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPAnd;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNot;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNotEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNotNull;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNull;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPOr;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFUpper;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
+import org.apache.phoenix.hive.udf.PhoenixSemiJoinUDF;
+import org.apache.phoenix.hive.util.PhoenixUtil;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Translates hive filter expression into where clause of phoenix query.
+ *
+ * Supported expressions. Operand is a column, upper(column) or lower(column) of string type, and the other side is a constant.
+ * <ul>
+ * <li>and, or, not</li>
+ * <li>=, &lt;&gt;, &lt;, &lt;=, &gt;, &gt;=</li>
+ * <li>is null, is not null</li>
+ * <li>in, between, not between</li>
+ * <li>like. ex) c1 like 'abc%' becomes a range scan when c1 is the leading row key column.</li>
+ * <li>boolean column</li>
+ * <li>phoenix_semijoin(column, filter). in list or min/max of the build side keys.</li>
+ * </ul>
+ *
+ * Pushed condition is always equivalent to the expression or weaker, because hive filter can remove rows but not restore them.
+ * Expression which can not be translated is dropped from the conjunction, so phoenix only returns more rows.
+ * Comparison whose literal semantic may differ in phoenix is not pushed(char, float, double), except date and timestamp.
+ * Phoenix and hive may read them in different time zones, so their range is widened by a day.
+ * NOT is pushed only if its operand is translated exactly, since negation of a weaker condition is stronger.
+ *
+ * On decomposition, conjuncts translated exactly are removed from the residual filter of hive. Weakened conjuncts are pushed and also kept in hive.
+ * Semijoin filter of a weakened phoenix_semijoin conjunct is also handed over to record reader of the scan, which skips rows not in its bloom filter.
+ *
+ * If bind variables are used, literals are written as '?' and their values are collected in order of appearance.
+ * Queries differing only in literal values then have the same text, so parsed statements can be reused.
+ */
+public class PhoenixPredicateTranslator {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixPredicateTranslator.class);
+
+	private static final Map<Class<? extends GenericUDF>, String> COMPARISON_OPERATOR_MAP = ImmutableMap.<Class<? extends GenericUDF>, String>builder()
+			.put(GenericUDFOPEqual.class, "=")
+			.put(GenericUDFOPNotEqual.class, "<>")
+			.put(GenericUDFOPLessThan.class, "<")
+			.put(GenericUDFOPEqualOrLessThan.class, "<=")
+			.put(GenericUDFOPGreaterThan.class, ">")
+			.put(GenericUDFOPEqualOrGreaterThan.class, ">=")
+			.build();
+
+	// operator when column and constant are swapped. ex) 10 < c1 => c1 > 10
+	private static final Map<String, String> FLIPPED_OPERATOR_MAP = ImmutableMap.<String, String>builder()
+			.put("=", "=").put("<>", "<>").put("<", ">").put("<=", ">=").put(">", "<").put(">=", "<=")
+			.build();
+
+	private final List<String> conditionColumnList = Lists.newArrayList();
+	private final List<String> droppedExpressionList = Lists.newArrayList();
+	private final List<Object> bindValueList = Lists.newArrayList();
+
+	private final boolean useBindVariables;
+
+	// widening of date and timestamp range which covers time zone difference between hive and phoenix.
+	private static final long TEMPORAL_MARGIN_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	// false if current translation is weaker than the expression.
+	private boolean exactTranslation;
+
+	// filter of phoenix_semijoin translated last.
+	private PhoenixSemiJoinFilter translatedSemiJoinFilter;
+
+	public PhoenixPredicateTranslator() {
+		this(false);
+	}
+
+	public PhoenixPredicateTranslator(boolean useBindVariables) {
+		this.useBindVariables = useBindVariables;
+	}
+
+	/**
+	 * Filter expression of table scan. Null if no filter is pushed.
+	 */
+	public static ExprNodeGenericFuncDesc getFilterExpr(Configuration config) {
+		String filterExprSerialized = config.get(TableScanDesc.FILTER_EXPR_CONF_STR);
+
+		return filterExprSerialized == null ? null : Utilities.deserializeExpression(filterExprSerialized);
+	}
+
+	/**
+	 * Pushed predicate object set by decomposition. Null if not exist.
+	 */
+	public static PhoenixPushedPredicate getPushedPredicate(Configuration config) {
+		String filterObject = config.get(TableScanDesc.FILTER_OBJECT_CONF_STR);
+		if (filterObject == null) {
+			return null;
+		}
+
+		// filter object is written by kryo without class, so it is read as the class set by decompose.
+		return Utilities.deserializeObject(filterObject, PhoenixPushedPredicate.class);
+	}
+
+	/**
+	 * Splits predicate into conjuncts pushed to phoenix and residual evaluated by hive. Null if nothing can be pushed.
+	 */
+	public DecomposedPredicate decompose(ExprNodeDesc predicate) {
+		List<ExprNodeDesc> pushedList = Lists.newArrayList();
+		List<ExprNodeDesc> residualList = Lists.newArrayList();
+		List<String> conditionList = Lists.newArrayList();
+		PhoenixSemiJoinFilter semiJoinFilter = null;
+
+		for (ExprNodeDesc conjunct : ExprNodeDescUtils.split(predicate)) {
+			exactTranslation = true;
+			String condition = conjunct instanceof ExprNodeGenericFuncDesc ? translate(conjunct, false) : drop(conjunct);
+
+			if (condition == null) {
+				residualList.add(conjunct);
+				continue;
+			}
+
+			pushedList.add(conjunct);
+			conditionList.add(condition);
+
+			if (!exactTranslation) {
+				residualList.add(conjunct);
+
+				// bloom filter skips rows in reader before hive evaluates the conjunct again.
+				if (semiJoinFilter == null && isSemiJoin(conjunct)) {
+					semiJoinFilter = translatedSemiJoinFilter;
+				}
+			}
+		}
+
+		if (pushedList.isEmpty()) {
+			if (LOG.isInfoEnabled()) {
+				LOG.info("<<<<<<<<<< nothing pushed : " + predicate.getExprString() + " >>>>>>>>>>");
+			}
+
+			return null;
+		}
+
+		DecomposedPredicate decomposedPredicate = new DecomposedPredicate();
+		decomposedPredicate.pushedPredicate = (ExprNodeGenericFuncDesc)ExprNodeDescUtils.mergePredicates(pushedList);
+		decomposedPredicate.residualPredicate = residualList.isEmpty() ? null : (ExprNodeGenericFuncDesc)ExprNodeDescUtils.mergePredicates(residualList);
+		decomposedPredicate.pushedPredicateObject = new PhoenixPushedPredicate(Joiner.on(" and ").join(conditionList), conditionColumnList, bindValueList, semiJoinFilter);
+
+		if (LOG.isInfoEnabled()) {
+			LOG.info("<<<<<<<<<< pushed predicate : " + decomposedPredicate.pushedPredicateObject + " >>>>>>>>>>");
+			LOG.info("<<<<<<<<<< residual predicate : " + (decomposedPredicate.residualPredicate == null ? null : decomposedPredicate.residualPredicate.getExprString()) + " >>>>>>>>>>");
+		}
+
+		return decomposedPredicate;
+	}
+
+	/**
+	 * Returns where clause without 'where'. Null if nothing can be translated.
+	 */
+	public String translate(ExprNodeDesc predicate) {
+		exactTranslation = true;
+		String whereClause = translate(predicate, false);
+
+		if (LOG.isInfoEnabled()) {
+			LOG.info("<<<<<<<<<< pushed predicate : " + whereClause + " >>>>>>>>>>");
+
+			if (!droppedExpressionList.isEmpty()) {
+				LOG.info("<<<<<<<<<< not pushed predicate : " + droppedExpressionList + " >>>>>>>>>>");
+			}
+		}
+
+		return whereClause;
+	}
+
+	/**
+	 * Hive columns used in translated where clause.
+	 */
+	public List<String> getConditionColumnList() {
+		return conditionColumnList;
+	}
+
+	public List<String> getDroppedExpressionList() {
+		return droppedExpressionList;
+	}
+
+	/**
+	 * Values of bind variables in translated where clause by position. Empty if bind variables are not used.
+	 */
+	public List<Object> getBindValueList() {
+		return bindValueList;
+	}
+
+	// if exact is true, the result must be equivalent to the expression. Otherwise it may be weaker.
+	private String translate(ExprNodeDesc expr, boolean exact) {
+		int bindValueCount = bindValueList.size();
+		String condition = translateExpression(expr, exact);
+
+		// values bound in an expression which is dropped afterwards are discarded.
+		if (condition == null) {
+			bindValueList.subList(bindValueCount, bindValueList.size()).clear();
+		}
+
+		return condition;
+	}
+
+	private String translateExpression(ExprNodeDesc expr, boolean exact) {
+		if (expr instanceof ExprNodeColumnDesc && isBooleanColumn((ExprNodeColumnDesc)expr)) {
+			return "(" + getColumnName((ExprNodeColumnDesc)expr) + " = true)";
+		}
+
+		if (!(expr instanceof ExprNodeGenericFuncDesc)) {
+			return drop(expr);
+		}
+
+		GenericUDF genericUDF = ((ExprNodeGenericFuncDesc)expr).getGenericUDF();
+		List<ExprNodeDesc> children = expr.getChildren();
+
+		if (genericUDF instanceof GenericUDFOPAnd) {
+			List<String> conditionList = Lists.newArrayList();
+
+			for (ExprNodeDesc child : children) {
+				String condition = translate(child, exact);
+
+				if (condition != null) {
+					conditionList.add(condition);
+				} else if (exact) {
+					return null;
+				}
+			}
+
+			return conditionList.isEmpty() ? null : "(" + Joiner.on(" and ").join(conditionList) + ")";
+		} else if (genericUDF instanceof GenericUDFOPOr) {
+			List<String> conditionList = Lists.newArrayList();
+
+			for (ExprNodeDesc child : children) {
+				String condition = translate(child, exact);
+
+				// a weaker disjunct is safe, but a missing one is not.
+				if (condition == null) {
+					return drop(expr);
+				}
+				conditionList.add(condition);
+			}
+
+			return "(" + Joiner.on(" or ").join(conditionList) + ")";
+		} else if (genericUDF instanceof GenericUDFOPNot) {
+			boolean exactBefore = exactTranslation;
+			exactTranslation = true;
+
+			String condition = translate(children.get(0), true);
+			boolean exactOperand = exactTranslation;
+			exactTranslation = exactBefore;
+
+			// negation of a weaker condition is stronger than the expression.
+			return condition == null || !exactOperand ? drop(expr) : "(not " + condition + ")";
+		} else if (COMPARISON_OPERATOR_MAP.containsKey(genericUDF.getClass())) {
+			return translateComparison(expr, COMPARISON_OPERATOR_MAP.get(genericUDF.getClass()), children.get(0), children.get(1));
+		} else if (genericUDF instanceof GenericUDFOPNull || genericUDF instanceof GenericUDFOPNotNull) {
+			if (getColumn(children.get(0)) == null) {
+				return drop(expr);
+			}
+
+			return "(" + toOperandString(children.get(0)) + (genericUDF instanceof GenericUDFOPNull ? " is null)" : " is not null)");
+		} else if (genericUDF instanceof GenericUDFIn) {
+			return translateIn(expr, children);
+		} else if (genericUDF instanceof GenericUDFBetween) {
+			return translateBetween(expr, children);
+		} else if (genericUDF instanceof GenericUDFBridge && UDFLike.class.getName().equals(((GenericUDFBridge)genericUDF).getUdfClassName())) {
+			return translateLike(expr, children.get(0), children.get(1));
+		} else if (isSemiJoin(expr)) {
+			return translateSemiJoin(expr, children.get(0), children.get(1));
+		}
+
+		return drop(expr);
+	}
+
+	private boolean isSemiJoin(ExprNodeDesc expr) {
+		return expr instanceof ExprNodeGenericFuncDesc && ((ExprNodeGenericFuncDesc)expr).getGenericUDF() instanceof PhoenixSemiJoinUDF;
+	}
+
+	// keys are written as decimal or string literal, so only exact numeric and string columns are pushed.
+	private String translateSemiJoin(ExprNodeDesc expr, ExprNodeDesc key, ExprNodeDesc serializedFilter) {
+		if (!isColumn(key) || !(serializedFilter instanceof ExprNodeConstantDesc) || ((ExprNodeConstantDesc)serializedFilter).getValue() == null) {
+			return drop(expr);
+		}
+
+		ExprNodeColumnDesc column = (ExprNodeColumnDesc)key;
+		PhoenixSemiJoinFilter filter = null;
+		try {
+			filter = PhoenixSemiJoinFilter.deserialize(((ExprNodeConstantDesc)serializedFilter).getValue().toString());
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("<<<<<<<<<< invalid semijoin filter of " + column.getColumn() + " : " + e.getMessage() + " >>>>>>>>>>");
+
+			return drop(expr);
+		}
+
+		String columnType = column.getTypeString();
+		boolean numericColumn = isNumericType(columnType) && !columnType.equals("float") && !columnType.equals("double");
+
+		if (!filter.getColumnName().equalsIgnoreCase(column.getColumn())
+				|| (filter.getCount() > 0 && (filter.isNumeric() ? !numericColumn : !isStringType(columnType)))) {
+			return drop(expr);
+		}
+
+		if (!filter.isExactCondition()) {
+			exactTranslation = false;
+		}
+
+		getColumnName(column);
+		translatedSemiJoinFilter = filter;
+
+		return filter.getCondition();
+	}
+
+	private String translateComparison(ExprNodeDesc expr, String operator, ExprNodeDesc left, ExprNodeDesc right) {
+		ExprNodeDesc operand = null;
+		ExprNodeConstantDesc constant = null;
+
+		if (getColumn(left) != null && right instanceof ExprNodeConstantDesc) {
+			operand = left;
+			constant = (ExprNodeConstantDesc)right;
+		} else if (left instanceof ExprNodeConstantDesc && getColumn(right) != null) {
+			operand = right;
+			constant = (ExprNodeConstantDesc)left;
+			operator = FLIPPED_OPERATOR_MAP.get(operator);
+		} else {
+			return drop(expr);
+		}
+
+		if (isTemporalType(getColumn(operand).getTypeString())) {
+			return translateTemporalComparison(expr, operator, getColumn(operand), constant);
+		}
+
+		String literal = toLiteral(getColumn(operand), constant);
+		if (literal == null) {
+			return drop(expr);
+		}
+
+		return "(" + toOperandString(operand) + " " + operator + " " + literal + ")";
+	}
+
+	private String translateIn(ExprNodeDesc expr, List<ExprNodeDesc> children) {
+		ExprNodeColumnDesc column = getColumn(children.get(0));
+		if (column == null) {
+			return drop(expr);
+		}
+
+		List<String> literalList = Lists.newArrayListWithExpectedSize(children.size() - 1);
+
+		for (int i = 1, limit = children.size(); i < limit; i++) {
+			String literal = children.get(i) instanceof ExprNodeConstantDesc ? toLiteral(column, (ExprNodeConstantDesc)children.get(i)) : null;
+
+			if (literal == null) {
+				return drop(expr);
+			}
+			literalList.add(literal);
+		}
+
+		return "(" + toOperandString(children.get(0)) + " in (" + Joiner.on(", ").join(literalList) + "))";
+	}
+
+	// pattern of hive and phoenix is same. % : any string, _ : any character, \\ : escape
+	private String translateLike(ExprNodeDesc expr, ExprNodeDesc operand, ExprNodeDesc pattern) {
+		ExprNodeColumnDesc column = getColumn(operand);
+		if (column == null || !isStringType(column.getTypeString()) || !(pattern instanceof ExprNodeConstantDesc)
+				|| !(((ExprNodeConstantDesc)pattern).getValue() instanceof String)) {
+			return drop(expr);
+		}
+
+		String patternValue = (String)((ExprNodeConstantDesc)pattern).getValue();
+
+		return "(" + toOperandString(operand) + " like " + literal(quote(patternValue), patternValue) + ")";
+	}
+
+	// children : invert, column, lower bound, upper bound
+	private String translateBetween(ExprNodeDesc expr, List<ExprNodeDesc> children) {
+		if (!(children.get(0) instanceof ExprNodeConstantDesc) || getColumn(children.get(1)) == null
+				|| !(children.get(2) instanceof ExprNodeConstantDesc) || !(children.get(3) instanceof ExprNodeConstantDesc)) {
+			return drop(expr);
+		}
+
+		boolean invert = Boolean.TRUE.equals(((ExprNodeConstantDesc)children.get(0)).getValue());
+		ExprNodeColumnDesc column = getColumn(children.get(1));
+
+		if (isTemporalType(column.getTypeString())) {
+			Long lowerMillis = toMillis(column, (ExprNodeConstantDesc)children.get(2));
+			Long upperMillis = toMillis(column, (ExprNodeConstantDesc)children.get(3));
+
+			// widened not between is stronger than the expression.
+			if (invert || lowerMillis == null || upperMillis == null) {
+				return drop(expr);
+			}
+
+			exactTranslation = false;
+			return "(" + getColumnName(column) + " between " + toTemporalLiteral(column, lowerMillis - TEMPORAL_MARGIN_MILLIS)
+					+ " and " + toTemporalLiteral(column, upperMillis + TEMPORAL_MARGIN_MILLIS) + ")";
+		}
+
+		String lowerBound = toLiteral(column, (ExprNodeConstantDesc)children.get(2));
+		String upperBound = toLiteral(column, (ExprNodeConstantDesc)children.get(3));
+
+		if (lowerBound == null || upperBound == null) {
+			return drop(expr);
+		}
+
+		return "(" + toOperandString(children.get(1)) + (invert ? " not between " : " between ") + lowerBound + " and " + upperBound + ")";
+	}
+
+	// range widened by margin. <> can not be widened.
+	private String translateTemporalComparison(ExprNodeDesc expr, String operator, ExprNodeColumnDesc column, ExprNodeConstantDesc constant) {
+		Long millis = toMillis(column, constant);
+		if (millis == null || "<>".equals(operator)) {
+			return drop(expr);
+		}
+
+		exactTranslation = false;
+		String columnName = getColumnName(column);
+
+		if ("=".equals(operator)) {
+			return "(" + columnName + " between " + toTemporalLiteral(column, millis - TEMPORAL_MARGIN_MILLIS) + " and " + toTemporalLiteral(column, millis + TEMPORAL_MARGIN_MILLIS) + ")";
+		} else if (operator.startsWith("<")) {
+			return "(" + columnName + " <= " + toTemporalLiteral(column, millis + TEMPORAL_MARGIN_MILLIS) + ")";
+		}
+
+		return "(" + columnName + " >= " + toTemporalLiteral(column, millis - TEMPORAL_MARGIN_MILLIS) + ")";
+	}
+
+	/**
+	 * Milliseconds of date or timestamp constant as hive reads it. Null if not a date or timestamp.
+	 */
+	private Long toMillis(ExprNodeColumnDesc column, ExprNodeConstantDesc constant) {
+		Object value = constant.getValue();
+
+		if (value instanceof java.util.Date) {
+			return ((java.util.Date)value).getTime();
+		} else if (value instanceof String || value instanceof HiveChar || value instanceof HiveVarchar) {
+			String stringValue = value instanceof HiveChar ? ((HiveChar)value).getStrippedValue() : value.toString();
+
+			try {
+				return PhoenixStorageHandlerConstants.DATE_TYPE.equals(column.getTypeString()) ? Date.valueOf(stringValue.trim()).getTime() : Timestamp.valueOf(stringValue.trim()).getTime();
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+
+		return null;
+	}
+
+	private String toTemporalLiteral(ExprNodeColumnDesc column, long millis) {
+		String value = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new java.util.Date(millis));
+
+		return (PhoenixStorageHandlerConstants.DATE_TYPE.equals(column.getTypeString()) ? "to_date(" : "to_timestamp(") + literal(quote(value), value) + ")";
+	}
+
+	private boolean isTemporalType(String columnType) {
+		return PhoenixStorageHandlerConstants.DATE_TYPE.equals(columnType) || PhoenixStorageHandlerConstants.TIMESTAMP_TYPE.equals(columnType);
+	}
+
+	private boolean isColumn(ExprNodeDesc expr) {
+		return expr instanceof ExprNodeColumnDesc && !((ExprNodeColumnDesc)expr).getIsPartitionColOrVirtualCol();
+	}
+
+	/**
+	 * Column of operand. Operand is a column or upper/lower of string column. Null if not.
+	 */
+	private ExprNodeColumnDesc getColumn(ExprNodeDesc operand) {
+		if (isColumn(operand)) {
+			return (ExprNodeColumnDesc)operand;
+		}
+
+		if (isCaseConversion(operand) && isColumn(operand.getChildren().get(0))) {
+			ExprNodeColumnDesc column = (ExprNodeColumnDesc)operand.getChildren().get(0);
+
+			return isStringType(column.getTypeString()) ? column : null;
+		}
+
+		return null;
+	}
+
+	private boolean isCaseConversion(ExprNodeDesc operand) {
+		if (!(operand instanceof ExprNodeGenericFuncDesc) || operand.getChildren().size() != 1) {
+			return false;
+		}
+
+		GenericUDF genericUDF = ((ExprNodeGenericFuncDesc)operand).getGenericUDF();
+		return genericUDF instanceof GenericUDFUpper || genericUDF instanceof GenericUDFLower;
+	}
+
+	private String toOperandString(ExprNodeDesc operand) {
+		String columnName = getColumnName(getColumn(operand));
+
+		if (isCaseConversion(operand)) {
+			return (((ExprNodeGenericFuncDesc)operand).getGenericUDF() instanceof GenericUDFUpper ? "upper(" : "lower(") + columnName + ")";
+		}
+
+		return columnName;
+	}
+
+	private boolean isStringType(String columnType) {
+		return columnType.startsWith("string") || columnType.startsWith("varchar");
+	}
+
+	private boolean isBooleanColumn(ExprNodeColumnDesc column) {
+		return isColumn(column) && column.getTypeInfo() instanceof PrimitiveTypeInfo
+				&& ((PrimitiveTypeInfo)column.getTypeInfo()).getPrimitiveCategory() == PrimitiveTypeInfo.PrimitiveCategory.BOOLEAN;
+	}
+
+	private String getColumnName(ExprNodeColumnDesc column) {
+		String columnName = column.getColumn();
+
+		if (!conditionColumnList.contains(columnName)) {
+			conditionColumnList.add(columnName);
+		}
+
+		return columnName;
+	}
+
+	/**
+	 * Literal of phoenix by the type of constant and column. Null if the constant can not be written exactly.
+	 * Date and timestamp are translated as widened range instead.
+	 */
+	private String toLiteral(ExprNodeColumnDesc column, ExprNodeConstantDesc constant) {
+		Object value = constant.getValue();
+		String columnType = column.getTypeString();
+
+		if (value == null || isTemporalType(columnType)) {
+			return null;
+		} else if (value instanceof String || value instanceof HiveChar || value instanceof HiveVarchar) {
+			// hive ignores trailing spaces of char, phoenix does not.
+			if (columnType.startsWith("string") || columnType.startsWith("varchar")) {
+				String stringValue = value instanceof HiveChar ? ((HiveChar)value).getStrippedValue() : value.toString();
+
+				return literal(quote(stringValue), stringValue);
+			}
+
+			return null;
+		} else if ((value instanceof Number || value instanceof HiveDecimal) && isNumericType(columnType)) {
+			// binary floating point value and decimal literal of phoenix are not compared exactly.
+			if (value instanceof Double || value instanceof Float || columnType.equals("float") || columnType.equals("double")) {
+				return null;
+			}
+
+			return literal(value.toString(), value instanceof HiveDecimal ? ((HiveDecimal)value).bigDecimalValue() : value);
+		} else if (value instanceof Boolean && "boolean".equals(columnType)) {
+			return literal(value.toString(), value);
+		}
+
+		return null;
+	}
+
+	private boolean isNumericType(String columnType) {
+		return columnType.equals("tinyint") || columnType.equals("smallint") || columnType.equals("int") || columnType.equals("bigint")
+				|| columnType.equals("float") || columnType.equals("double") || columnType.startsWith("decimal");
+	}
+
+	// sql literal itself, or bind variable whose value is collected.
+	private String literal(String sqlLiteral, Object bindValue) {
+		if (!useBindVariables) {
+			return sqlLiteral;
+		}
+
+		bindValueList.add(bindValue);
+		return "?";
+	}
+
+	private String quote(String value) {
+		return PhoenixUtil.quote(value);
+	}
+
+	private String drop(ExprNodeDesc expr) {
+		droppedExpressionList.add(expr.getExprString());
+		exactTranslation = false;
+
+		return null;
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.query;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where clause pushed to phoenix by predicate decomposition. Handed over to split phase as filter object of table scan.
+ */
+public class PhoenixPushedPredicate implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String whereClause;
+	private final ArrayList<String> conditionColumnList;
+	// Values of bind variables in where clause by position. Empty if literals are inlined.
+	private final ArrayList<Object> bindValueList;
+	// Serialized semijoin filter applied by record reader of this scan. Null if not exist.
+	// Kept as string because kryo of hive skips the transient bloom filter.
+	private final String semiJoinFilter;
+
+	public PhoenixPushedPredicate(String whereClause, List<String> conditionColumnList) {
+		this(whereClause, conditionColumnList, new ArrayList<Object>());
+	}
+
+	public PhoenixPushedPredicate(String whereClause, List<String> conditionColumnList, List<Object> bindValueList) {
+		this(whereClause, conditionColumnList, bindValueList, null);
+	}
+
+	public PhoenixPushedPredicate(String whereClause, List<String> conditionColumnList, List<Object> bindValueList, PhoenixSemiJoinFilter semiJoinFilter) {
+		this.whereClause = whereClause;
+		this.conditionColumnList = new ArrayList<>(conditionColumnList);
+		this.bindValueList = new ArrayList<>(bindValueList);
+		try {
+			this.semiJoinFilter = semiJoinFilter == null ? null : semiJoinFilter.serialize();
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Failed to serialize semijoin filter.", e);
+		}
+	}
+
+	public String getWhereClause() {
+		return whereClause;
+	}
+
+	public List<String> getConditionColumnList() {
+		return conditionColumnList;
+	}
+
+	public List<Object> getBindValueList() {
+		return bindValueList;
+	}
+
+	public PhoenixSemiJoinFilter getSemiJoinFilter() throws IOException {
+		return semiJoinFilter == null ? null : PhoenixSemiJoinFilter.deserialize(semiJoinFilter);
+	}
+
+	public boolean hasSemiJoinFilter() {
+		return semiJoinFilter != null;
+	}
+
+	@Override
+	public String toString() {
+		return "[where clause, condition columns, bind values, semijoin filter] : [" + whereClause + ", " + conditionColumnList + ", " + bindValueList + ", " + hasSemiJoinFilter() + "]";
+	}
+}
@@ -82,12 +82,13 @@ public class PhoenixQueryBuilder {
 		StringBuilder sql = new StringBuilder();
 		List<String> conditionColumnList = buildWhereClause(jobConf, sql, whereClause, columnTypeMap);
 		
-		if (conditionColumnList.size() > 0) {
-			addConditionColumnToReadColumn(readColumnList, conditionColumnList);
-			sql.insert(0, queryTemplate.replace("$HINT$",  hints).replace("$COLUMN_LIST$", getSelectColumns(jobConf, tableName, readColumnList)).replace("$TABLE_NAME$", tableName));
-		} else {
-			sql.append(queryTemplate.replace("$HINT$",  hints).replace("$COLUMN_LIST$", getSelectColumns(jobConf, tableName, readColumnList)).replace("$TABLE_NAME$", tableName));
-		}
+		return makeQueryString(jobConf, tableName, readColumnList, sql, conditionColumnList, queryTemplate, hints);
+	}
+	
+	private String makeQueryString(JobConf jobConf, String tableName, List<String> readColumnList, StringBuilder sql, List<String> conditionColumnList, String queryTemplate, String hints) throws IOException {
+		addConditionColumnToReadColumn(readColumnList, conditionColumnList);
+		// where clause may exist without condition column. ex) 1 = 0
+		sql.insert(0, queryTemplate.replace("$HINT$",  hints).replace("$COLUMN_LIST$", getSelectColumns(jobConf, tableName, readColumnList)).replace("$TABLE_NAME$", tableName));
 		
 		if (LOG.isInfoEnabled()) {
 			LOG.info("<<<<<<<<<< input query : " + sql.toString() + " >>>>>>>>>>");
@@ -154,6 +155,27 @@ public class PhoenixQueryBuilder {
 		return makeQueryString(jobConf, tableName, Lists.newArrayList(readColumnList), whereClause, QUERY_TEMPLATE, hints, columnTypeMap);
 	}
 	
+	/**
+	 * Builds query with where clause already written in phoenix syntax. ex) translated by PhoenixPredicateTranslator
+	 */
+	public String buildQuery(JobConf jobConf, String tableName, List<String> readColumnList, String phoenixWhereClause, List<String> conditionColumnList) throws IOException {
+		String hints = getHint(jobConf, tableName);
+		
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<<<<<<<<<< read columns : " + readColumnList + " >>>>>>>>>>");
+			LOG.debug("<<<<<<<<<< table name : " + tableName + " >>>>>>>>>>");
+			LOG.debug("<<<<<<<<<< phoenix conditions : " + phoenixWhereClause + " >>>>>>>>>>");
+			LOG.debug("<<<<<<<<<< hints : " + hints + " >>>>>>>>>>");
+		}
+		
+		StringBuilder sql = new StringBuilder();
+		if (phoenixWhereClause != null && !phoenixWhereClause.isEmpty()) {
+			sql.append(" where ").append(phoenixWhereClause);
+		}
+		
+		return makeQueryString(jobConf, tableName, Lists.newArrayList(readColumnList), sql, conditionColumnList, QUERY_TEMPLATE, hints);
+	}
+	
 	// 2016-04-04 modified by JeongMin Ju : Changed predicate push down processing to tez-way. reference PhoenixInputFormat.getSplits.
 //	public String buildQuery(JobConf jobConf, String tableName, List<String> readColumnList, List<IndexSearchCondition> searchConditions) throws IOException {
 //		String hints = getHint(jobConf, tableName);
@@ -0,0 +1,337 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.common.type.HiveChar;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.common.type.HiveVarchar;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.apache.hadoop.util.bloom.Key;
+import org.apache.hadoop.util.hash.Hash;
+import org.apache.phoenix.hive.util.PhoenixUtil;
+
+/**
+ * Join key summary of the build side of a join. It has min/max value and bloom filter of the key.
+ *
+ * It is given to the scan of probe side table by phoenix_semijoin(column, filter) in where clause, so only that scan of the query is filtered.
+ * Min/max is added to the query of probe side table so that phoenix narrows the scan in region server.
+ * Bloom filter is applied in record reader, so rows which can not be joined do not go into hive operators.
+ * Null key and key of unsupported type are never filtered.
+ * If the build side has a few distinct keys, they are kept and added as in list instead of min/max.
+ * Phoenix makes a skip scan of it and regions which have none of the keys are not split.
+ * Numeric values are compared as decimal and others as string.
+ *
+ * Bloom filter is written only by java serialization, so the filter is shipped in serialized form(see serialize), not by kryo of hive plan.
+ */
+public class PhoenixSemiJoinFilter implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Log LOG = LogFactory.getLog(PhoenixSemiJoinFilter.class);
+
+	private final String columnName;
+	private final int vectorSize;
+	private final int hashCount;
+
+	@SuppressWarnings("rawtypes")
+	private Comparable min;
+	@SuppressWarnings("rawtypes")
+	private Comparable max;
+	private long count;
+
+	// distinct keys up to maxValues. null if exceeded.
+	private final int maxValues;
+	@SuppressWarnings("rawtypes")
+	private TreeSet<Comparable> values;
+
+	private transient BloomFilter bloomFilter;
+
+	public PhoenixSemiJoinFilter(String columnName, int expectedEntries, double fpp) {
+		this(columnName, expectedEntries, fpp, 0);
+	}
+
+	@SuppressWarnings("rawtypes")
+	public PhoenixSemiJoinFilter(String columnName, int expectedEntries, double fpp, int maxValues) {
+		this.columnName = columnName.toLowerCase();
+		this.maxValues = maxValues;
+		this.values = maxValues > 0 ? new TreeSet<Comparable>() : null;
+
+		int entries = Math.max(1, expectedEntries);
+		this.vectorSize = Math.max(64, (int)Math.ceil(-entries * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+		this.hashCount = Math.max(1, (int)Math.round((double)vectorSize / entries * Math.log(2)));
+		this.bloomFilter = new BloomFilter(vectorSize, hashCount, Hash.MURMUR_HASH);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void add(Object value) {
+		if (value == null) {
+			return;
+		}
+
+		Comparable normalizedValue = normalize(value);
+		if (normalizedValue == null) {
+			throw new IllegalArgumentException("Unsupported join key type : " + value.getClass().getName());
+		}
+		if (min != null && min.getClass() != normalizedValue.getClass()) {
+			throw new IllegalArgumentException("Join key type " + value.getClass().getName() + " differs from previous keys.");
+		}
+
+		if (min == null || min.compareTo(normalizedValue) > 0) {
+			min = normalizedValue;
+		}
+		if (max == null || max.compareTo(normalizedValue) < 0) {
+			max = normalizedValue;
+		}
+
+		bloomFilter.add(toKey(normalizedValue));
+		count++;
+
+		if (values != null) {
+			values.add(normalizedValue);
+
+			if (values.size() > maxValues) {
+				values = null;
+			}
+		}
+	}
+
+	/**
+	 * False only if the value is surely not a key of the build side. Null and value of unsupported type are not filtered.
+	 * Value which is not compared with the keys, e.g. string value for numeric keys, is not filtered either.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public boolean mightContain(Object value) {
+		Comparable normalizedValue = normalize(value);
+		if (normalizedValue == null) {
+			return true;
+		}
+
+		if (count == 0) {
+			return false;
+		}
+		if (min.getClass() != normalizedValue.getClass()) {
+			return true;
+		}
+
+		if (min.compareTo(normalizedValue) > 0 || max.compareTo(normalizedValue) < 0) {
+			return false;
+		}
+
+		// kept keys are exact, so the result is same as in list condition.
+		if (values != null) {
+			return values.contains(normalizedValue);
+		}
+
+		return bloomFilter.membershipTest(toKey(normalizedValue));
+	}
+
+	@SuppressWarnings("unchecked")
+	public void merge(PhoenixSemiJoinFilter other) {
+		if (other.count == 0) {
+			return;
+		}
+		if (min != null && min.getClass() != other.min.getClass()) {
+			throw new IllegalArgumentException("Join key type of partial filter differs. " + min.getClass().getName() + " : " + other.min.getClass().getName());
+		}
+
+		if (min == null || min.compareTo(other.min) > 0) {
+			min = other.min;
+		}
+		if (max == null || max.compareTo(other.max) < 0) {
+			max = other.max;
+		}
+
+		bloomFilter.or(other.bloomFilter);
+		count += other.count;
+
+		if (values != null) {
+			if (other.values == null) {
+				values = null;
+			} else {
+				values.addAll(other.values);
+
+				if (values.size() > maxValues) {
+					values = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Condition of phoenix equivalent to mightContain on the probe column. In list if distinct keys are kept, otherwise min/max which is weaker.
+	 * Null keys are not filtered.
+	 */
+	@SuppressWarnings("rawtypes")
+	public String getCondition() {
+		if (count == 0) {
+			return "(" + columnName + " is null)";
+		}
+
+		if (values != null) {
+			StringBuilder condition = new StringBuilder();
+			condition.append("(").append(columnName).append(" is null or ").append(columnName).append(" in (");
+
+			for (Iterator<Comparable> iterator = values.iterator(); iterator.hasNext();) {
+				condition.append(toLiteral(iterator.next()));
+
+				if (iterator.hasNext()) {
+					condition.append(", ");
+				}
+			}
+
+			return condition.append("))").toString();
+		}
+
+		return "(" + columnName + " is null or (" + columnName + " >= " + toLiteral(min) + " and " + columnName + " <= " + toLiteral(max) + "))";
+	}
+
+	public String getColumnName() {
+		return columnName;
+	}
+
+	/**
+	 * True if keys are compared as decimal, false if as string. False if empty.
+	 */
+	public boolean isNumeric() {
+		return min instanceof BigDecimal;
+	}
+
+	/**
+	 * True if getCondition is same as mightContain, i.e. keys are written as in list or nothing is kept.
+	 */
+	public boolean isExactCondition() {
+		return count == 0 || values != null;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public int getValueCount() {
+		return values == null ? -1 : values.size();
+	}
+
+	public byte[] toBytes() throws IOException {
+		ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytesOut)) {
+			out.writeObject(this);
+		}
+
+		return bytesOut.toByteArray();
+	}
+
+	public static PhoenixSemiJoinFilter fromBytes(byte[] bytes, int offset, int length) throws IOException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+			return (PhoenixSemiJoinFilter)in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public String serialize() throws IOException {
+		return Base64.encodeBase64String(toBytes());
+	}
+
+	public static PhoenixSemiJoinFilter deserialize(String serializedFilter) throws IOException {
+		byte[] bytes = Base64.decodeBase64(serializedFilter);
+		PhoenixSemiJoinFilter filter = fromBytes(bytes, 0, bytes.length);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<<<<<<<<<< semijoin filter : " + filter + " >>>>>>>>>>");
+		}
+
+		return filter;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		bloomFilter.write(out);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		bloomFilter = new BloomFilter();
+		bloomFilter.readFields(in);
+	}
+
+	// null if value is null or unsupported type.
+	@SuppressWarnings("rawtypes")
+	static Comparable normalize(Object value) {
+		if (value == null) {
+			return null;
+		} else if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+			return BigDecimal.valueOf(((Number)value).longValue());
+		} else if (value instanceof Float || value instanceof Double) {
+			return BigDecimal.valueOf(((Number)value).doubleValue()).stripTrailingZeros();
+		} else if (value instanceof BigDecimal) {
+			return ((BigDecimal)value).stripTrailingZeros();
+		} else if (value instanceof HiveDecimal) {
+			return ((HiveDecimal)value).bigDecimalValue().stripTrailingZeros();
+		} else if (value instanceof IntWritable) {
+			return BigDecimal.valueOf(((IntWritable)value).get());
+		} else if (value instanceof LongWritable) {
+			return BigDecimal.valueOf(((LongWritable)value).get());
+		} else if (value instanceof String || value instanceof Text) {
+			return value.toString();
+		} else if (value instanceof HiveVarchar) {
+			return ((HiveVarchar)value).getValue();
+		} else if (value instanceof HiveChar) {
+			return ((HiveChar)value).getStrippedValue();
+		}
+
+		return null;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static Key toKey(Comparable normalizedValue) {
+		String keyString = normalizedValue instanceof BigDecimal ? ((BigDecimal)normalizedValue).toPlainString() : normalizedValue.toString();
+
+		return new Key(keyString.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static String toLiteral(Comparable normalizedValue) {
+		if (normalizedValue instanceof BigDecimal) {
+			return ((BigDecimal)normalizedValue).toPlainString();
+		}
+
+		return PhoenixUtil.quote(normalizedValue.toString());
+	}
+
+	@Override
+	public String toString() {
+		return "[column, count, min, max, distinct, vectorSize, hashCount] : [" + columnName + ", " + count + ", " + min + ", " + max + ", " + getValueCount() + ", " + vectorSize + ", " + hashCount + "]";
+	}
+}
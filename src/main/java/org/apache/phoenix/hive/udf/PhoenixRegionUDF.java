@@ -0,0 +1,326 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.udf;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hive.common.type.HiveChar;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.common.type.HiveVarchar;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.MapredContext;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.Hive;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.metadata.Table;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.session.SessionState;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ConstantObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
+import org.apache.phoenix.hive.mapreduce.PhoenixDirectMutator;
+import org.apache.phoenix.hive.util.PhoenixConnectionRegistry;
+import org.apache.phoenix.hive.util.PhoenixStorageHandlerUtil;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.PhoenixRuntime;
+
+/**
+ * Returns index of the region of phoenix table which the row with given primary key belongs to.
+ *
+ * Table is the hive table of phoenix storage handler. Phoenix table name and zookeeper properties are taken from its table properties
+ * when the query is compiled, and shipped with the function in the plan.
+ *
+ * Row key is encoded by the table as upsert does, including salt byte, and looked up in region start keys of the physical table.
+ * Distributed by this function, rows of a region go to the same reducer, so each reducer writes to one or a few regions
+ * instead of all regions. Hash of int key is the value itself, so region i is sent to reducer (i % number of reducers).
+ * Number of reducers of such reduce sink is set to region count of the table. See SetReducerParallelism and Utilities.estimateNumberOfReducers.
+ *
+ * <pre>
+ * create temporary function phoenix_region as 'org.apache.phoenix.hive.udf.PhoenixRegionUDF';
+ * insert into table phoenix_table select ... from hive_table distribute by phoenix_region('phoenix_table', id, name);
+ * </pre>
+ */
+@Description(name = "phoenix_region", value = "_FUNC_('hive table of phoenix', primary key values...) - Returns index of the region of phoenix table the row belongs to")
+public class PhoenixRegionUDF extends GenericUDF {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixRegionUDF.class);
+
+	private String tableName;
+	// resolved from table properties in compile.
+	private String phoenixTableName;
+	private Properties connectionProps;
+
+	private transient PrimitiveObjectInspector[] keyOIs;
+	private transient Configuration config;
+
+	private transient PTable table;
+	private transient PColumn[] pkColumns;
+	private transient int pkOffset;
+	private transient byte[][] pkValues;
+	private transient byte[][] startKeys;
+
+	private transient ImmutableBytesWritable rowKey;
+	private transient ImmutableBytesWritable ptr;
+	private transient IntWritable result;
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+		if (arguments.length < 2) {
+			throw new UDFArgumentLengthException("phoenix_region takes table name and primary key values.");
+		}
+
+		if (!ObjectInspectorUtils.isConstantObjectInspector(arguments[0])) {
+			throw new UDFArgumentTypeException(0, "Table name of phoenix_region must be constant.");
+		}
+		tableName = ((ConstantObjectInspector)arguments[0]).getWritableConstantValue().toString();
+
+		if (connectionProps == null && SessionState.get() != null) {
+			resolveTableProperties(SessionState.get().getConf());
+		}
+
+		keyOIs = new PrimitiveObjectInspector[arguments.length - 1];
+		for (int i = 1; i < arguments.length; i++) {
+			if (arguments[i].getCategory() != ObjectInspector.Category.PRIMITIVE) {
+				throw new UDFArgumentTypeException(i, "Only primitive type is accepted but " + arguments[i].getTypeName() + " is passed.");
+			}
+
+			keyOIs[i - 1] = (PrimitiveObjectInspector)arguments[i];
+		}
+
+		result = new IntWritable();
+
+		return PrimitiveObjectInspectorFactory.writableIntObjectInspector;
+	}
+
+	@Override
+	public void configure(MapredContext context) {
+		config = context.getJobConf();
+	}
+
+	@Override
+	public Object evaluate(DeferredObject[] arguments) throws HiveException {
+		if (table == null) {
+			resolveTable();
+		}
+
+		PColumn column = null;
+		Object value = null;
+
+		try {
+			for (int i = 0; i < pkColumns.length; i++) {
+				column = pkColumns[i];
+				value = toJavaObject(keyOIs[i].getPrimitiveJavaObject(arguments[i + 1].get()));
+				pkValues[i + pkOffset] = PhoenixDirectMutator.toBytes(column, value, ptr);
+			}
+
+			table.newKey(rowKey, pkValues);
+		} catch (RuntimeException e) {
+			throw new HiveException("Failed to make row key of " + tableName + ". [column, value] : " + column + ", " + value, e);
+		}
+
+		result.set(PhoenixStorageHandlerUtil.getRegionIndex(startKeys, rowKey.get(), rowKey.getOffset(), rowKey.getLength()));
+
+		return result;
+	}
+
+	// value types accepted by phoenix.
+	private Object toJavaObject(Object value) {
+		if (value instanceof HiveDecimal) {
+			return ((HiveDecimal)value).bigDecimalValue();
+		} else if (value instanceof HiveVarchar) {
+			return ((HiveVarchar)value).getValue();
+		} else if (value instanceof HiveChar) {
+			return ((HiveChar)value).getStrippedValue();
+		}
+
+		return value;
+	}
+
+	private void resolveTable() throws HiveException {
+		Connection conn = null;
+
+		try {
+			conn = PhoenixConnectionRegistry.getInstance().getConnection(getConfiguration(config), getConnectionProperties());
+			PhoenixConnection phoenixConnection = conn.unwrap(PhoenixConnection.class);
+			PTable resolvedTable = PhoenixRuntime.getTable(phoenixConnection, getPhoenixTableName().toUpperCase());
+
+			// salt column is not given.
+			List<PColumn> pkColumnList = resolvedTable.getPKColumns();
+			int offset = resolvedTable.getBucketNum() == null ? 0 : 1;
+			if (pkColumnList.size() - offset != keyOIs.length) {
+				throw new UDFArgumentLengthException("phoenix_region of " + tableName + " takes " + (pkColumnList.size() - offset) + " primary key values but " + keyOIs.length + " are passed.");
+			}
+
+			// values are in the positions of row key. salt byte is computed in newKey.
+			pkColumns = pkColumnList.subList(offset, pkColumnList.size()).toArray(new PColumn[keyOIs.length]);
+			pkOffset = offset;
+			pkValues = new byte[pkColumnList.size()][];
+			Arrays.fill(pkValues, ByteUtil.EMPTY_BYTE_ARRAY);
+			startKeys = getStartKeys(phoenixConnection, resolvedTable);
+			rowKey = new ImmutableBytesWritable();
+			ptr = new ImmutableBytesWritable();
+			table = resolvedTable;
+
+			if (LOG.isInfoEnabled()) {
+				LOG.info("<<<<<<<<<< " + tableName + " has " + startKeys.length + " regions >>>>>>>>>>");
+			}
+		} catch (SQLException e) {
+			throw new HiveException(e);
+		} finally {
+			PhoenixConnectionRegistry.getInstance().release(conn);
+		}
+	}
+
+	private static byte[][] getStartKeys(PhoenixConnection conn, PTable table) throws SQLException {
+		List<HRegionLocation> regionLocationList = conn.getQueryServices().getAllTableRegions(table.getPhysicalName().getBytes());
+		byte[][] startKeys = new byte[regionLocationList.size()][];
+
+		for (int i = 0; i < startKeys.length; i++) {
+			startKeys[i] = regionLocationList.get(i).getRegionInfo().getStartKey();
+		}
+
+		return startKeys;
+	}
+
+	/**
+	 * Phoenix table name and zookeeper properties of the hive table. Session and job configuration are used if the table is not found.
+	 */
+	private void resolveTableProperties(HiveConf hiveConf) {
+		Properties props = new Properties();
+
+		try {
+			Table table = Hive.get(hiveConf).getTable(tableName, false);
+
+			if (table != null) {
+				Map<String, String> tableParameterMap = table.getParameters();
+				phoenixTableName = tableParameterMap.get(PhoenixStorageHandlerConstants.PHOENIX_TABLE_NAME);
+
+				for (String propertyName : new String[] { PhoenixStorageHandlerConstants.ZOOKEEPER_QUORUM, PhoenixStorageHandlerConstants.ZOOKEEPER_PORT, PhoenixStorageHandlerConstants.ZOOKEEPER_PARENT }) {
+					if (tableParameterMap.get(propertyName) != null) {
+						props.setProperty(propertyName, tableParameterMap.get(propertyName));
+					}
+				}
+			} else {
+				LOG.warn("<<<<<<<<<< " + tableName + " is not a hive table. connection of session is used. >>>>>>>>>>");
+			}
+		} catch (HiveException e) {
+			LOG.warn("<<<<<<<<<< Failed to get table properties of " + tableName + " : " + e.getMessage() + " >>>>>>>>>>");
+		}
+
+		connectionProps = props;
+	}
+
+	private String getPhoenixTableName() {
+		return phoenixTableName == null ? tableName : phoenixTableName;
+	}
+
+	private Properties getConnectionProperties() {
+		return connectionProps == null ? new Properties() : connectionProps;
+	}
+
+	// job configuration in task, session configuration in compile.
+	private static Configuration getConfiguration(Configuration config) {
+		if (config != null) {
+			return config;
+		}
+
+		return SessionState.get() != null ? SessionState.get().getConf() : new Configuration();
+	}
+
+	/**
+	 * Region count of phoenix table if rows are distributed only by phoenix_region, otherwise -1.
+	 */
+	public static int getRegionCount(Configuration config, List<ExprNodeDesc> partitionColList) {
+		if (partitionColList == null || partitionColList.size() != 1 || !(partitionColList.get(0) instanceof ExprNodeGenericFuncDesc)) {
+			return -1;
+		}
+
+		GenericUDF udf = ((ExprNodeGenericFuncDesc)partitionColList.get(0)).getGenericUDF();
+		if (!(udf instanceof PhoenixRegionUDF)) {
+			return -1;
+		}
+
+		PhoenixRegionUDF regionUDF = (PhoenixRegionUDF)udf;
+		String tableName = regionUDF.getTableName();
+		Connection conn = null;
+
+		try {
+			conn = PhoenixConnectionRegistry.getInstance().getConnection(config, regionUDF.getConnectionProperties());
+			PhoenixConnection phoenixConnection = conn.unwrap(PhoenixConnection.class);
+			int regionCount = getStartKeys(phoenixConnection, PhoenixRuntime.getTable(phoenixConnection, regionUDF.getPhoenixTableName().toUpperCase())).length;
+
+			if (LOG.isInfoEnabled()) {
+				LOG.info("<<<<<<<<<< rows are distributed by regions of " + tableName + ". region count : " + regionCount + " >>>>>>>>>>");
+			}
+
+			return regionCount;
+		} catch (SQLException e) {
+			LOG.warn("<<<<<<<<<< Failed to get region count of " + tableName + " : " + e.getMessage() + " >>>>>>>>>>");
+
+			return -1;
+		} finally {
+			PhoenixConnectionRegistry.getInstance().release(conn);
+		}
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	@Override
+	public void close() throws IOException {
+		table = null;
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		StringBuilder sb = new StringBuilder("phoenix_region(");
+
+		for (int i = 0; i < children.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(children[i]);
+		}
+
+		return sb.append(")").toString();
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.udf;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.parse.SemanticException;
+import org.apache.hadoop.hive.ql.udf.generic.AbstractGenericUDAFResolver;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.serde2.objectinspector.ConstantObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.BinaryObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.phoenix.hive.query.PhoenixSemiJoinFilter;
+
+/**
+ * Builds semijoin filter from join keys of the build side of a join. It is applied to the scan of probe side by phoenix_semijoin.
+ *
+ * <pre>
+ * create temporary function phoenix_semijoin_filter as 'org.apache.phoenix.hive.udf.PhoenixSemiJoinFilterUDAF';
+ * select phoenix_semijoin_filter(b.id, 'customer_id', 100000, 0.01, 1000) from build_table b where ...;
+ * set customer_filter=[result of above query];
+ * select ... from phoenix_table a join build_table b on a.customer_id = b.id where phoenix_semijoin(a.customer_id, '${hiveconf:customer_filter}');
+ * </pre>
+ */
+@Description(name = "phoenix_semijoin_filter", value = "_FUNC_(key, 'probe column'[, expected entries[, false positive probability[, max in list values]]]) - Returns semijoin filter for phoenix table scan")
+public class PhoenixSemiJoinFilterUDAF extends AbstractGenericUDAFResolver {
+
+	private static final int DEFAULT_EXPECTED_ENTRIES = 1000000;
+	private static final double DEFAULT_FPP = 0.01;
+	private static final int DEFAULT_MAX_VALUES = 1000;
+
+	@Override
+	public GenericUDAFEvaluator getEvaluator(TypeInfo[] parameters) throws SemanticException {
+		if (parameters.length < 2 || parameters.length > 5) {
+			throw new UDFArgumentException("phoenix_semijoin_filter takes 2 to 5 arguments.");
+		}
+
+		if (parameters[0].getCategory() != ObjectInspector.Category.PRIMITIVE) {
+			throw new UDFArgumentTypeException(0, "Only primitive type is accepted but " + parameters[0].getTypeName() + " is passed.");
+		}
+
+		switch (((PrimitiveTypeInfo)parameters[0]).getPrimitiveCategory()) {
+			case BYTE:
+			case SHORT:
+			case INT:
+			case LONG:
+			case FLOAT:
+			case DOUBLE:
+			case DECIMAL:
+			case STRING:
+			case VARCHAR:
+			case CHAR:
+				return new SemiJoinFilterEvaluator();
+			default:
+				throw new UDFArgumentTypeException(0, "Unsupported join key type : " + parameters[0].getTypeName());
+		}
+	}
+
+	public static class SemiJoinFilterEvaluator extends GenericUDAFEvaluator {
+
+		// PARTIAL1, COMPLETE
+		private PrimitiveObjectInspector keyOI;
+		private String columnName;
+		private int expectedEntries = DEFAULT_EXPECTED_ENTRIES;
+		private double fpp = DEFAULT_FPP;
+		private int maxValues = DEFAULT_MAX_VALUES;
+
+		// PARTIAL2, FINAL
+		private BinaryObjectInspector partialOI;
+
+		static class SemiJoinFilterBuffer extends AbstractAggregationBuffer {
+			PhoenixSemiJoinFilter filter;
+		}
+
+		@Override
+		public ObjectInspector init(Mode m, ObjectInspector[] parameters) throws HiveException {
+			super.init(m, parameters);
+
+			if (m == Mode.PARTIAL1 || m == Mode.COMPLETE) {
+				keyOI = (PrimitiveObjectInspector)parameters[0];
+				columnName = getConstantValue(parameters, 1).toString();
+
+				if (parameters.length > 2) {
+					expectedEntries = PrimitiveObjectInspectorUtils.getInt(getConstantValue(parameters, 2), (PrimitiveObjectInspector)parameters[2]);
+				}
+				if (parameters.length > 3) {
+					fpp = PrimitiveObjectInspectorUtils.getDouble(getConstantValue(parameters, 3), (PrimitiveObjectInspector)parameters[3]);
+				}
+				if (parameters.length > 4) {
+					maxValues = PrimitiveObjectInspectorUtils.getInt(getConstantValue(parameters, 4), (PrimitiveObjectInspector)parameters[4]);
+				}
+			} else {
+				partialOI = (BinaryObjectInspector)parameters[0];
+			}
+
+			if (m == Mode.PARTIAL1 || m == Mode.PARTIAL2) {
+				return PrimitiveObjectInspectorFactory.writableBinaryObjectInspector;
+			}
+
+			return PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+		}
+
+		private Object getConstantValue(ObjectInspector[] parameters, int index) throws UDFArgumentException {
+			if (!ObjectInspectorUtils.isConstantObjectInspector(parameters[index])) {
+				throw new UDFArgumentTypeException(index, "Argument " + (index + 1) + " of phoenix_semijoin_filter must be constant.");
+			}
+
+			return ((ConstantObjectInspector)parameters[index]).getWritableConstantValue();
+		}
+
+		@Override
+		public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+			SemiJoinFilterBuffer buffer = new SemiJoinFilterBuffer();
+			reset(buffer);
+
+			return buffer;
+		}
+
+		@Override
+		public void reset(AggregationBuffer agg) throws HiveException {
+			// filter of PARTIAL2, FINAL is taken from the first partial result.
+			((SemiJoinFilterBuffer)agg).filter = columnName == null ? null : new PhoenixSemiJoinFilter(columnName, expectedEntries, fpp, maxValues);
+		}
+
+		@Override
+		public void iterate(AggregationBuffer agg, Object[] parameters) throws HiveException {
+			Object key = keyOI.getPrimitiveJavaObject(parameters[0]);
+
+			if (key != null) {
+				((SemiJoinFilterBuffer)agg).filter.add(key);
+			}
+		}
+
+		@Override
+		public Object terminatePartial(AggregationBuffer agg) throws HiveException {
+			PhoenixSemiJoinFilter filter = ((SemiJoinFilterBuffer)agg).filter;
+			if (filter == null) {
+				return null;
+			}
+
+			try {
+				return new BytesWritable(filter.toBytes());
+			} catch (IOException e) {
+				throw new HiveException(e);
+			}
+		}
+
+		@Override
+		public void merge(AggregationBuffer agg, Object partial) throws HiveException {
+			if (partial == null) {
+				return;
+			}
+
+			SemiJoinFilterBuffer buffer = (SemiJoinFilterBuffer)agg;
+			BytesWritable bytes = partialOI.getPrimitiveWritableObject(partial);
+
+			try {
+				PhoenixSemiJoinFilter partialFilter = PhoenixSemiJoinFilter.fromBytes(bytes.getBytes(), 0, bytes.getLength());
+
+				if (buffer.filter == null) {
+					buffer.filter = partialFilter;
+				} else {
+					buffer.filter.merge(partialFilter);
+				}
+			} catch (IOException e) {
+				throw new HiveException(e);
+			}
+		}
+
+		@Override
+		public Object terminate(AggregationBuffer agg) throws HiveException {
+			PhoenixSemiJoinFilter filter = ((SemiJoinFilterBuffer)agg).filter;
+			if (filter == null) {
+				return null;
+			}
+
+			try {
+				return new Text(filter.serialize());
+			} catch (IOException e) {
+				throw new HiveException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.udf;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ConstantObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.phoenix.hive.query.PhoenixSemiJoinFilter;
+
+/**
+ * Returns false if the key is surely not in the semijoin filter built by phoenix_semijoin_filter. Null key returns true.
+ *
+ * Used in where clause of the probe side table, the call is decomposed by storage handler into the condition of phoenix query
+ * and bloom filter of record reader. It is pushed only to the scan it is written for, not to other scans of the table.
+ *
+ * <pre>
+ * create temporary function phoenix_semijoin as 'org.apache.phoenix.hive.udf.PhoenixSemiJoinUDF';
+ * select ... from phoenix_table a join build_table b on a.customer_id = b.id where phoenix_semijoin(a.customer_id, '${hiveconf:customer_filter}');
+ * </pre>
+ */
+@Description(name = "phoenix_semijoin", value = "_FUNC_(key, 'semijoin filter') - Returns false if key is not in semijoin filter")
+public class PhoenixSemiJoinUDF extends GenericUDF {
+
+	private String serializedFilter;
+
+	private transient PrimitiveObjectInspector keyOI;
+	private transient PhoenixSemiJoinFilter filter;
+	private transient BooleanWritable result;
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+		if (arguments.length != 2) {
+			throw new UDFArgumentLengthException("phoenix_semijoin takes key and semijoin filter.");
+		}
+
+		if (arguments[0].getCategory() != ObjectInspector.Category.PRIMITIVE) {
+			throw new UDFArgumentTypeException(0, "Only primitive type is accepted but " + arguments[0].getTypeName() + " is passed.");
+		}
+		keyOI = (PrimitiveObjectInspector)arguments[0];
+
+		if (!ObjectInspectorUtils.isConstantObjectInspector(arguments[1])) {
+			throw new UDFArgumentTypeException(1, "Semijoin filter of phoenix_semijoin must be constant.");
+		}
+		serializedFilter = ((ConstantObjectInspector)arguments[1]).getWritableConstantValue().toString();
+
+		result = new BooleanWritable();
+
+		return PrimitiveObjectInspectorFactory.writableBooleanObjectInspector;
+	}
+
+	@Override
+	public Object evaluate(DeferredObject[] arguments) throws HiveException {
+		if (filter == null) {
+			try {
+				filter = PhoenixSemiJoinFilter.deserialize(serializedFilter);
+			} catch (IOException e) {
+				throw new HiveException("Invalid semijoin filter.", e);
+			}
+		}
+
+		result.set(filter.mightContain(keyOI.getPrimitiveJavaObject(arguments[0].get())));
+
+		return result;
+	}
+
+	@Override
+	public void close() throws IOException {
+		filter = null;
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "phoenix_semijoin(" + children[0] + ", " + children[1] + ")";
+	}
+}
@@ -0,0 +1,379 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.util;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HConnectionManager;
+import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
+import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
+import org.apache.phoenix.util.PhoenixRuntime;
+
+import com.google.common.collect.Maps;
+
+/**
+ * JVM wide registry of connections used for reading.
+ *
+ * HConnection is thread safe, so one connection per [quorum, port, znode] is shared and reference counted.
+ * Phoenix connection is not thread safe, so idle connections are pooled per [quorum, port, znode, scn, tenant] and lent to one user at a time.
+ * Unreferenced connections are kept for reuse(Tez container reuse, HiveServer2) and closed after idle timeout.
+ * Prepared statements are cached per pooled connection, so a query prepared again on the reused connection is not parsed again.
+ * Every acquired connection must be given back with {@link #release(Object)}.
+ */
+public class PhoenixConnectionRegistry {
+
+	private static final Log LOG = LogFactory.getLog(PhoenixConnectionRegistry.class);
+
+	private static final PhoenixConnectionRegistry REGISTRY = new PhoenixConnectionRegistry();
+
+	// Properties which make phoenix connection different. Others are taken from configuration.
+	private static final String[] CONNECTION_PROPERTY_NAMES = new String[] {
+		PhoenixRuntime.CURRENT_SCN_ATTRIB,
+		PhoenixRuntime.TENANT_ID_ATTRIB,
+		PhoenixStorageHandlerConstants.ZOOKEEPER_QUORUM,
+		PhoenixStorageHandlerConstants.ZOOKEEPER_PORT,
+		PhoenixStorageHandlerConstants.ZOOKEEPER_PARENT
+	};
+
+	// Maximum number of prepared statements cached per pooled connection.
+	private static final int MAX_CACHED_STATEMENTS = 100;
+
+	private final Map<String, SharedConnection> hconnectionMap = Maps.newHashMap();
+	private final Map<String, Deque<PooledConnection>> idleConnectionMap = Maps.newHashMap();
+	private final Map<Object, Lease> leaseMap = new IdentityHashMap<Object, Lease>();
+
+	private long hconnectionCreateCount;
+	private long connectionCreateCount;
+	private long connectionReuseCount;
+	private long statementCacheHitCount;
+	private long statementCacheMissCount;
+
+	private PhoenixConnectionRegistry() {
+		Runtime.getRuntime().addShutdownHook(new Thread("phoenix-connection-leak-report") {
+			@Override
+			public void run() {
+				reportLeak();
+			}
+		});
+	}
+
+	public static PhoenixConnectionRegistry getInstance() {
+		return REGISTRY;
+	}
+
+	public HConnection getHConnection(Configuration config) throws IOException {
+		String key = config.get(HConstants.ZOOKEEPER_QUORUM) + PhoenixStorageHandlerConstants.COLON + config.get(HConstants.ZOOKEEPER_CLIENT_PORT) +
+				PhoenixStorageHandlerConstants.COLON + config.get(HConstants.ZOOKEEPER_ZNODE_PARENT);
+
+		synchronized (this) {
+			closeIdleConnections(config);
+
+			SharedConnection sharedConnection = hconnectionMap.get(key);
+			if (sharedConnection == null || sharedConnection.hconnection.isClosed()) {
+				sharedConnection = new SharedConnection(key, HConnectionManager.createConnection(config));
+				hconnectionMap.put(key, sharedConnection);
+				hconnectionCreateCount++;
+
+				if (LOG.isInfoEnabled()) {
+					LOG.info("<<<<<<<<<< hconnection created : " + key + ", " + getMetrics() + " >>>>>>>>>>");
+				}
+			}
+
+			sharedConnection.refCount++;
+			leaseMap.put(sharedConnection.hconnection, new Lease(key, sharedConnection, null, isLeakDetectionEnabled(config), leaseMap.get(sharedConnection.hconnection)));
+
+			return sharedConnection.hconnection;
+		}
+	}
+
+	/**
+	 * Connection properties other than scn, tenant and zookeeper information are ignored.
+	 */
+	public Connection getConnection(Configuration config, Properties props) throws SQLException {
+		Properties connectionProps = new Properties();
+		StringBuilder key = new StringBuilder();
+
+		for (String propertyName : CONNECTION_PROPERTY_NAMES) {
+			// given properties override configuration. ex) scn of the query plan
+			String value = props.getProperty(propertyName, config.get(propertyName));
+			if (value != null) {
+				connectionProps.setProperty(propertyName, value);
+			}
+
+			key.append(value).append(PhoenixStorageHandlerConstants.COLON);
+		}
+
+		PooledConnection pooledConnection = null;
+		synchronized (this) {
+			closeIdleConnections(config);
+
+			Deque<PooledConnection> idleConnections = idleConnectionMap.get(key.toString());
+			while (idleConnections != null && !idleConnections.isEmpty() && pooledConnection == null) {
+				pooledConnection = idleConnections.pollLast();
+
+				if (pooledConnection.connection.isClosed()) {
+					pooledConnection = null;
+				}
+			}
+
+			if (pooledConnection != null) {
+				connectionReuseCount++;
+				leaseMap.put(pooledConnection.connection, new Lease(key.toString(), null, pooledConnection, isLeakDetectionEnabled(config), null));
+
+				return pooledConnection.connection;
+			}
+		}
+
+		// connection is created out of lock because it may take long time.
+		pooledConnection = new PooledConnection(PhoenixConnectionUtil.getInputConnection(config, connectionProps));
+
+		synchronized (this) {
+			connectionCreateCount++;
+			leaseMap.put(pooledConnection.connection, new Lease(key.toString(), null, pooledConnection, isLeakDetectionEnabled(config), null));
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("<<<<<<<<<< phoenix connection created : " + key + ", " + getMetrics() + " >>>>>>>>>>");
+			}
+		}
+
+		return pooledConnection.connection;
+	}
+
+	/**
+	 * Gives back connection acquired from this registry.
+	 */
+	public void release(Object connection) {
+		if (connection == null) {
+			return;
+		}
+
+		synchronized (this) {
+			Lease lease = leaseMap.remove(connection);
+			if (lease == null) {
+				LOG.warn("Released connection is not acquired from registry or already released : " + connection);
+				return;
+			}
+
+			if (lease.sharedConnection != null) {
+				if (lease.previous != null) {
+					leaseMap.put(connection, lease.previous);
+				}
+
+				lease.sharedConnection.refCount--;
+				lease.sharedConnection.lastReleasedTime = System.currentTimeMillis();
+			} else {
+				Deque<PooledConnection> idleConnections = idleConnectionMap.get(lease.key);
+				if (idleConnections == null) {
+					idleConnections = new LinkedList<PooledConnection>();
+					idleConnectionMap.put(lease.key, idleConnections);
+				}
+
+				lease.pooledConnection.lastReleasedTime = System.currentTimeMillis();
+				idleConnections.addLast(lease.pooledConnection);
+			}
+		}
+	}
+
+	/**
+	 * Prepared statement of sql on a connection acquired from this registry. Cached statement is returned with parameters cleared.
+	 * The statement must not be closed by caller. It is closed with the connection.
+	 */
+	public PhoenixPreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+		PooledConnection pooledConnection = null;
+		synchronized (this) {
+			Lease lease = leaseMap.get(connection);
+			pooledConnection = lease == null ? null : lease.pooledConnection;
+		}
+
+		if (pooledConnection == null) {
+			return connection.prepareStatement(sql).unwrap(PhoenixPreparedStatement.class);
+		}
+
+		// statement cache is used by the lessee only.
+		PhoenixPreparedStatement statement = pooledConnection.statementCache.get(sql);
+		if (statement != null && !statement.isClosed()) {
+			statement.clearParameters();
+
+			synchronized (this) {
+				statementCacheHitCount++;
+			}
+		} else {
+			statement = connection.prepareStatement(sql).unwrap(PhoenixPreparedStatement.class);
+			pooledConnection.statementCache.put(sql, statement);
+
+			synchronized (this) {
+				statementCacheMissCount++;
+			}
+		}
+
+		return statement;
+	}
+
+	public synchronized String getMetrics() {
+		int hconnectionRefCount = 0;
+		for (SharedConnection sharedConnection : hconnectionMap.values()) {
+			hconnectionRefCount += sharedConnection.refCount;
+		}
+
+		int idleConnectionCount = 0;
+		for (Deque<PooledConnection> idleConnections : idleConnectionMap.values()) {
+			idleConnectionCount += idleConnections.size();
+		}
+
+		return "[hconnection, hconnectionRef, hconnectionCreated, connectionActive, connectionIdle, connectionCreated, connectionReused, statementCacheHit, statementCacheMiss] : [" +
+				hconnectionMap.size() + ", " + hconnectionRefCount + ", " + hconnectionCreateCount + ", " + (leaseMap.size() - countHConnectionLeases()) + ", " +
+				idleConnectionCount + ", " + connectionCreateCount + ", " + connectionReuseCount + ", " + statementCacheHitCount + ", " + statementCacheMissCount + "]";
+	}
+
+	private int countHConnectionLeases() {
+		int count = 0;
+		for (Lease lease : leaseMap.values()) {
+			if (lease.sharedConnection != null) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	private boolean isLeakDetectionEnabled(Configuration config) {
+		return config.getBoolean(PhoenixStorageHandlerConstants.CONNECTION_LEAK_DETECTION, false);
+	}
+
+	private void closeIdleConnections(Configuration config) {
+		long idleTimeout = config.getLong(PhoenixStorageHandlerConstants.CONNECTION_IDLE_TIMEOUT, PhoenixStorageHandlerConstants.DEFAULT_CONNECTION_IDLE_TIMEOUT);
+		long expiredTime = System.currentTimeMillis() - idleTimeout;
+
+		for (Iterator<SharedConnection> iterator = hconnectionMap.values().iterator(); iterator.hasNext(); ) {
+			SharedConnection sharedConnection = iterator.next();
+
+			if (sharedConnection.refCount == 0 && sharedConnection.lastReleasedTime < expiredTime) {
+				iterator.remove();
+
+				try {
+					sharedConnection.hconnection.close();
+				} catch (IOException e) {
+					LOG.warn("Failed to close idle hconnection : " + sharedConnection.key, e);
+				}
+			}
+		}
+
+		for (Iterator<Deque<PooledConnection>> iterator = idleConnectionMap.values().iterator(); iterator.hasNext(); ) {
+			Deque<PooledConnection> idleConnections = iterator.next();
+
+			// oldest released connection is at the head.
+			while (!idleConnections.isEmpty() && idleConnections.peekFirst().lastReleasedTime < expiredTime) {
+				try {
+					idleConnections.pollFirst().connection.close();
+				} catch (SQLException e) {
+					LOG.warn("Failed to close idle phoenix connection", e);
+				}
+			}
+
+			if (idleConnections.isEmpty()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private synchronized void reportLeak() {
+		for (Lease lease : leaseMap.values()) {
+			for (Lease aLease = lease; aLease != null; aLease = aLease.previous) {
+				if (aLease.acquiredTrace != null) {
+					LOG.warn("Connection is not released : " + aLease.key, aLease.acquiredTrace);
+				} else {
+					LOG.warn("Connection is not released : " + aLease.key + ". Set " + PhoenixStorageHandlerConstants.CONNECTION_LEAK_DETECTION + "=true to find where it is acquired.");
+				}
+			}
+		}
+	}
+
+	private static class SharedConnection {
+		private final String key;
+		private final HConnection hconnection;
+		private int refCount;
+		private long lastReleasedTime = System.currentTimeMillis();
+
+		public SharedConnection(String key, HConnection hconnection) {
+			this.key = key;
+			this.hconnection = hconnection;
+		}
+	}
+
+	private static class PooledConnection {
+		private final Connection connection;
+		private long lastReleasedTime = System.currentTimeMillis();
+
+		// least recently used statement is closed when the cache is full.
+		private final Map<String, PhoenixPreparedStatement> statementCache = new LinkedHashMap<String, PhoenixPreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PhoenixPreparedStatement> eldest) {
+				if (size() <= MAX_CACHED_STATEMENTS) {
+					return false;
+				}
+
+				try {
+					eldest.getValue().close();
+				} catch (SQLException e) {
+					LOG.warn("Failed to close cached statement : " + eldest.getKey(), e);
+				}
+
+				return true;
+			}
+		};
+
+		public PooledConnection(Connection connection) {
+			this.connection = connection;
+		}
+	}
+
+	/**
+	 * Outstanding acquisition. Leases of shared hconnection are chained because the same object is handed out many times.
+	 */
+	private static class Lease {
+		private final String key;
+		private final SharedConnection sharedConnection;
+		private final PooledConnection pooledConnection;
+		private final Throwable acquiredTrace;
+		private final Lease previous;
+
+		public Lease(String key, SharedConnection sharedConnection, PooledConnection pooledConnection, boolean traceEnabled, Lease previous) {
+			this.key = key;
+			this.sharedConnection = sharedConnection;
+			this.pooledConnection = pooledConnection;
+			this.acquiredTrace = traceEnabled ? new Throwable("connection acquired here") : null;
+			this.previous = previous;
+		}
+	}
+}
@@ -37,6 +37,7 @@ import javax.naming.NamingException;
 import org.apache.commons.logging.Log;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Strings;
 import org.apache.hadoop.hive.metastore.api.Table;
 import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
@@ -131,6 +132,26 @@ public class PhoenixStorageHandlerUtil {
 //		return constantValues;
 //	}
 	
+	/**
+	 * Index of the region whose range contains the row. Start keys are sorted and the first one is empty.
+	 */
+	public static int getRegionIndex(byte[][] startKeys, byte[] row, int offset, int length) {
+		int low = 1;
+		int high = startKeys.length - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+
+			if (Bytes.compareTo(startKeys[mid], 0, startKeys[mid].length, row, offset, length) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		return high;
+	}
+
 	public static String getRegionLocation(HRegionLocation location, Log log) throws IOException {
 		InetSocketAddress isa = new InetSocketAddress(location.getHostname(), location.getPort());
 		if (isa.isUnresolved()) {
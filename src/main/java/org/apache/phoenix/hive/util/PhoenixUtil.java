@@ -55,6 +55,13 @@ public class PhoenixUtil {
 
 	private static final Log LOG = LogFactory.getLog(PhoenixUtil.class);
 	
+	/**
+	 * String literal of phoenix. Phoenix reads backslash escapes in string literal, so backslash is escaped before quote is doubled.
+	 */
+	public static String quote(String value) {
+		return PhoenixStorageHandlerConstants.QUOTATION_MARK + value.replace("\\", "\\\\").replace("'", "''") + PhoenixStorageHandlerConstants.QUOTATION_MARK;
+	}
+	
 	public static String getPhoenixType(String hiveTypeName) {
 		if (hiveTypeName.startsWith("array")) {
 			List<String> tokenList = Lists.newArrayList(Splitter.on(CharMatcher.is('<').or(CharMatcher.is('>'))).split(hiveTypeName));
@@ -107,10 +114,15 @@ public class PhoenixUtil {
 	public static List<String> getPrimaryKeyColumnList(Configuration config, String tableName) {
 		List<String> pkColumnNameList = null;
 		
-		try (Connection conn = PhoenixConnectionUtil.getInputConnection(config, new Properties())) {
+		PhoenixConnectionRegistry connectionRegistry = PhoenixConnectionRegistry.getInstance();
+		Connection conn = null;
+		try {
+			conn = connectionRegistry.getConnection(config, new Properties());
 			pkColumnNameList = getPrimaryKeyColumnList(conn, tableName);
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
+		} finally {
+			connectionRegistry.release(conn);
 		}
 		
 		return pkColumnNameList;
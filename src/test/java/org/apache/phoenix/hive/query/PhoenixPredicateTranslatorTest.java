@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler.DecomposedPredicate;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.plan.TableScanDesc;
+import org.apache.hadoop.hive.ql.udf.UDFLike;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBridge;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNot;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNotEqual;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.phoenix.hive.udf.PhoenixSemiJoinUDF;
+import org.junit.Test;
+
+/**
+ * Literal output of PhoenixPredicateTranslator.
+ */
+public class PhoenixPredicateTranslatorTest {
+
+	@Test
+	public void testQuote() {
+		assertEquals("(c1 = 'it''s')", translate(equal(column(TypeInfoFactory.stringTypeInfo), "it's")));
+		assertEquals("(c1 = '''')", translate(equal(column(TypeInfoFactory.stringTypeInfo), "'")));
+	}
+
+	@Test
+	public void testBackslash() {
+		assertEquals("(c1 = 'C:\\\\temp')", translate(equal(column(TypeInfoFactory.stringTypeInfo), "C:\\temp")));
+		assertEquals("(c1 = 'abc\\\\')", translate(equal(column(TypeInfoFactory.stringTypeInfo), "abc\\")));
+		assertEquals("(c1 = '\\\\''')", translate(equal(column(TypeInfoFactory.stringTypeInfo), "\\'")));
+	}
+
+	@Test
+	public void testLike() {
+		assertEquals("(c1 like 'abc%')", translate(like(column(TypeInfoFactory.stringTypeInfo), "abc%")));
+		// escaped wildcard keeps its backslash for like of phoenix.
+		assertEquals("(c1 like 'a\\\\_b%')", translate(like(column(TypeInfoFactory.stringTypeInfo), "a\\_b%")));
+		assertEquals("(c1 like 'it''s%')", translate(like(column(TypeInfoFactory.stringTypeInfo), "it's%")));
+	}
+
+	@Test
+	public void testDate() {
+		String widened = "(c1 between to_date('2016-01-30 00:00:00.000') and to_date('2016-02-01 00:00:00.000'))";
+
+		assertEquals(widened, translate(equal(column(TypeInfoFactory.dateTypeInfo), Date.valueOf("2016-01-31"))));
+		assertEquals(widened, translate(equal(column(TypeInfoFactory.dateTypeInfo), "2016-01-31")));
+		assertEquals("(c1 >= to_date('2016-01-30 00:00:00.000'))", translate(function(new GenericUDFOPGreaterThan(), column(TypeInfoFactory.dateTypeInfo), constant(Date.valueOf("2016-01-31")))));
+		assertNull(translate(function(new GenericUDFOPNotEqual(), column(TypeInfoFactory.dateTypeInfo), constant(Date.valueOf("2016-01-31")))));
+	}
+
+	@Test
+	public void testTimestamp() {
+		assertEquals("(c1 <= to_timestamp('2016-02-01 10:20:30.123'))",
+				translate(function(new GenericUDFOPLessThan(), column(TypeInfoFactory.timestampTypeInfo), constant(Timestamp.valueOf("2016-01-31 10:20:30.123")))));
+	}
+
+	@Test
+	public void testApproximateLiteral() {
+		assertNull(translate(equal(column(TypeInfoFactory.doubleTypeInfo), 0.1d)));
+		assertNull(translate(equal(column(TypeInfoFactory.getCharTypeInfo(10)), "abc")));
+	}
+
+	@Test
+	public void testNot() {
+		assertEquals("(not (c1 = 'abc'))", translate(function(new GenericUDFOPNot(), equal(column(TypeInfoFactory.stringTypeInfo), "abc"))));
+		// negation of widened range would exclude matching rows.
+		assertNull(translate(function(new GenericUDFOPNot(), equal(column(TypeInfoFactory.dateTypeInfo), Date.valueOf("2016-01-31")))));
+	}
+
+	@Test
+	public void testDecompose() {
+		DecomposedPredicate exact = new PhoenixPredicateTranslator().decompose(equal(column(TypeInfoFactory.stringTypeInfo), "abc"));
+		assertNull(exact.residualPredicate);
+
+		DecomposedPredicate widened = new PhoenixPredicateTranslator().decompose(equal(column(TypeInfoFactory.dateTypeInfo), Date.valueOf("2016-01-31")));
+		assertNotNull(widened.residualPredicate);
+	}
+
+	@Test
+	public void testSemiJoin() throws Exception {
+		PhoenixSemiJoinFilter inList = new PhoenixSemiJoinFilter("c1", 100, 0.01, 10);
+		inList.add(1);
+		inList.add(2);
+
+		DecomposedPredicate exact = new PhoenixPredicateTranslator().decompose(semiJoin(column(TypeInfoFactory.intTypeInfo), inList));
+		assertNull(exact.residualPredicate);
+		assertEquals("(c1 is null or c1 in (1, 2))", ((PhoenixPushedPredicate)exact.pushedPredicateObject).getWhereClause());
+		assertNull(((PhoenixPushedPredicate)exact.pushedPredicateObject).getSemiJoinFilter());
+
+		PhoenixSemiJoinFilter range = new PhoenixSemiJoinFilter("c1", 100, 0.01, 1);
+		range.add(1);
+		range.add(2);
+
+		// bloom filter of weakened condition is given to the reader of this scan.
+		DecomposedPredicate widened = new PhoenixPredicateTranslator().decompose(semiJoin(column(TypeInfoFactory.intTypeInfo), range));
+		assertNotNull(widened.residualPredicate);
+		assertNotNull(((PhoenixPushedPredicate)widened.pushedPredicateObject).getSemiJoinFilter());
+
+		// bloom filter survives kryo of hive filter object.
+		Configuration config = new Configuration();
+		config.set(TableScanDesc.FILTER_OBJECT_CONF_STR, Utilities.serializeObject(widened.pushedPredicateObject));
+		PhoenixSemiJoinFilter shippedFilter = PhoenixPredicateTranslator.getPushedPredicate(config).getSemiJoinFilter();
+		assertTrue(shippedFilter.mightContain(2));
+		assertFalse(shippedFilter.mightContain(3));
+
+		// numeric keys are not written for string column.
+		assertNull(translate(semiJoin(column(TypeInfoFactory.stringTypeInfo), inList)));
+	}
+
+	@Test
+	public void testPushedPredicateObject() {
+		PhoenixPredicateTranslator translator = new PhoenixPredicateTranslator(true);
+		DecomposedPredicate decomposed = translator.decompose(function(new GenericUDFOPNot(), equal(column(TypeInfoFactory.stringTypeInfo), "abc")));
+
+		// serialized as HiveInputFormat hands the filter object over to the tasks.
+		Configuration config = new Configuration();
+		config.set(TableScanDesc.FILTER_OBJECT_CONF_STR, Utilities.serializeObject(decomposed.pushedPredicateObject));
+		PhoenixPushedPredicate pushedPredicate = PhoenixPredicateTranslator.getPushedPredicate(config);
+
+		assertEquals("(not (c1 = ?))", pushedPredicate.getWhereClause());
+		assertEquals(Arrays.asList("c1"), pushedPredicate.getConditionColumnList());
+		assertEquals(Arrays.<Object>asList("abc"), pushedPredicate.getBindValueList());
+		assertNull(PhoenixPredicateTranslator.getPushedPredicate(new Configuration()));
+	}
+
+	@Test
+	public void testBindVariables() {
+		PhoenixPredicateTranslator translator = new PhoenixPredicateTranslator(true);
+
+		assertEquals("(c1 = ?)", translator.translate(equal(column(TypeInfoFactory.stringTypeInfo), "C:\\temp")));
+		assertEquals(Arrays.<Object>asList("C:\\temp"), translator.getBindValueList());
+	}
+
+	private String translate(ExprNodeDesc expr) {
+		return new PhoenixPredicateTranslator().translate(expr);
+	}
+
+	private ExprNodeColumnDesc column(TypeInfo typeInfo) {
+		return new ExprNodeColumnDesc(typeInfo, "c1", "t", false);
+	}
+
+	private ExprNodeGenericFuncDesc equal(ExprNodeColumnDesc column, Object value) {
+		return function(new GenericUDFOPEqual(), column, constant(value));
+	}
+
+	private ExprNodeGenericFuncDesc like(ExprNodeColumnDesc column, String pattern) {
+		return function(new GenericUDFBridge("like", false, UDFLike.class.getName()), column, constant(pattern));
+	}
+
+	private ExprNodeGenericFuncDesc semiJoin(ExprNodeColumnDesc column, PhoenixSemiJoinFilter filter) throws IOException {
+		return function(new PhoenixSemiJoinUDF(), column, constant(filter.serialize()));
+	}
+
+	private ExprNodeConstantDesc constant(Object value) {
+		if (value instanceof Date) {
+			return new ExprNodeConstantDesc(TypeInfoFactory.dateTypeInfo, value);
+		} else if (value instanceof Timestamp) {
+			return new ExprNodeConstantDesc(TypeInfoFactory.timestampTypeInfo, value);
+		}
+
+		return new ExprNodeConstantDesc(value);
+	}
+
+	private ExprNodeGenericFuncDesc function(GenericUDF genericUDF, ExprNodeDesc... children) {
+		return new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, genericUDF, Arrays.asList(children));
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Date;
+
+import org.junit.Test;
+
+/**
+ * Membership and condition of PhoenixSemiJoinFilter.
+ */
+public class PhoenixSemiJoinFilterTest {
+
+	@Test
+	public void testNullAndUnsupportedKey() {
+		PhoenixSemiJoinFilter filter = new PhoenixSemiJoinFilter("c1", 100, 0.01);
+		filter.add(1);
+
+		assertTrue(filter.mightContain(null));
+		assertTrue(filter.mightContain(Date.valueOf("2016-01-31")));
+		assertTrue(filter.mightContain(1L));
+		assertFalse(filter.mightContain(2));
+	}
+
+	@Test
+	public void testEmpty() {
+		PhoenixSemiJoinFilter filter = new PhoenixSemiJoinFilter("c1", 100, 0.01);
+
+		assertTrue(filter.mightContain(null));
+		assertFalse(filter.mightContain("abc"));
+		assertEquals("(c1 is null)", filter.getCondition());
+	}
+
+	@Test
+	public void testCondition() throws Exception {
+		PhoenixSemiJoinFilter inList = new PhoenixSemiJoinFilter("c1", 100, 0.01, 10);
+		inList.add("it's");
+		inList.add("C:\\temp");
+
+		assertEquals("(c1 is null or c1 in ('C:\\\\temp', 'it''s'))", inList.getCondition());
+		assertTrue(inList.isExactCondition());
+
+		PhoenixSemiJoinFilter range = PhoenixSemiJoinFilter.deserialize(newFilter(2, 10, 20, 30).serialize());
+
+		assertEquals("(c1 is null or (c1 >= 10 and c1 <= 30))", range.getCondition());
+		assertFalse(range.isExactCondition());
+		assertTrue(range.mightContain(20));
+	}
+
+	@Test
+	public void testMismatchedKeyType() {
+		PhoenixSemiJoinFilter filter = newFilter(10, 1, 2);
+
+		assertTrue(filter.mightContain("abc"));
+
+		try {
+			filter.add("abc");
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		PhoenixSemiJoinFilter stringFilter = new PhoenixSemiJoinFilter("c1", 100, 0.01);
+		stringFilter.add("abc");
+
+		try {
+			filter.merge(stringFilter);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedBuildKey() {
+		new PhoenixSemiJoinFilter("c1", 100, 0.01).add(Date.valueOf("2016-01-31"));
+	}
+
+	private PhoenixSemiJoinFilter newFilter(int maxValues, int... keys) {
+		PhoenixSemiJoinFilter filter = new PhoenixSemiJoinFilter("c1", 100, 0.01, maxValues);
+
+		for (int key : keys) {
+			filter.add(key);
+		}
+
+		return filter;
+	}
+}